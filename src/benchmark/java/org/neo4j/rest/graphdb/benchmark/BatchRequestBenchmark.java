@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.rest.graphdb.batch.BatchRequestWriter;
+import org.neo4j.rest.graphdb.batch.RestOperations;
+import org.neo4j.rest.graphdb.batch.RestOperations.RestOperation.Methods;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of recorded batch operations into the /batch request body, written to a stream that discards it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchRequestBenchmark {
+    @Param({"100", "10000"})
+    public int operations;
+
+    private RestOperations recorded;
+    private Map<Long, String> locations;
+    private OutputStream stream;
+
+    @Setup
+    public void setUp() {
+        recorded = new RestOperations();
+        locations = new HashMap<Long, String>();
+        long previous = 0;
+        for (int i = 0; i < operations; i++) {
+            final long node = recorded.record(Methods.POST, "node", MapUtil.map("name", "node" + i, "age", i), BenchmarkData.BASE_URI).getBatchId();
+            locations.put(node, BenchmarkData.BASE_URI + "/node/" + node);
+            if (previous > 0) {
+                recorded.record(Methods.POST, "relationships", MapUtil.map("to", "{" + previous + "}", "type", "KNOWS"), "{" + node + "}");
+            }
+            previous = node;
+        }
+        stream = new OutputStream() {
+            public void write(int b) { }
+
+            public void write(byte[] b, int off, int len) { }
+        };
+    }
+
+    @Benchmark
+    public void writeBatch() throws IOException {
+        new BatchRequestWriter(recorded.getRecordedRequests().values(), BenchmarkData.BASE_URI, null).write(stream);
+    }
+
+    @Benchmark
+    public void writeBatchResolvingReferences() throws IOException {
+        new BatchRequestWriter(recorded.getRecordedRequests().values(), BenchmarkData.BASE_URI, locations).write(stream);
+    }
+}
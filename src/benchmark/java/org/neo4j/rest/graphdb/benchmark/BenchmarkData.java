@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.rest.graphdb.util.JsonHelper;
+
+/**
+ * Server representations as they are returned by the REST API, used as input for the client side benchmarks.
+ */
+public class BenchmarkData {
+    public static final String BASE_URI = "http://localhost:7474/db/data";
+
+    public static Map<String, Object> node(long id) {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("name", "node" + id);
+        data.put("age", (int) id);
+        data.put("tags", Arrays.asList("a", "b", "c"));
+        final Map<String, Object> node = new HashMap<String, Object>();
+        node.put("self", BASE_URI + "/node/" + id);
+        node.put("properties", BASE_URI + "/node/" + id + "/properties");
+        node.put("outgoing_relationships", BASE_URI + "/node/" + id + "/relationships/out");
+        node.put("data", data);
+        return node;
+    }
+
+    public static Map<String, Object> relationship(long id, long start, long end) {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("since", 2013);
+        final Map<String, Object> relationship = new HashMap<String, Object>();
+        relationship.put("self", BASE_URI + "/relationship/" + id);
+        relationship.put("start", BASE_URI + "/node/" + start);
+        relationship.put("end", BASE_URI + "/node/" + end);
+        relationship.put("type", "KNOWS");
+        relationship.put("data", data);
+        return relationship;
+    }
+
+    public static Map<String, Object> cypherResult(int rows) {
+        final List<List<Object>> data = new ArrayList<List<Object>>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(Arrays.<Object>asList(node(i), relationship(i, i, i + 1), "value" + i, i));
+        }
+        final Map<String, Object> result = new HashMap<String, Object>();
+        result.put("columns", Arrays.asList("n", "r", "name", "count"));
+        result.put("data", data);
+        return result;
+    }
+
+    public static Map<String, Object> fullPath(int length) {
+        final List<Map<String, Object>> nodes = new ArrayList<Map<String, Object>>(length + 1);
+        final List<Map<String, Object>> relationships = new ArrayList<Map<String, Object>>(length);
+        for (int i = 0; i <= length; i++) {
+            nodes.add(node(i));
+            if (i < length) relationships.add(relationship(i, i, i + 1));
+        }
+        final Map<String, Object> path = new HashMap<String, Object>();
+        path.put("start", nodes.get(0));
+        path.put("end", nodes.get(length));
+        path.put("nodes", nodes);
+        path.put("relationships", relationships);
+        path.put("length", length);
+        return path;
+    }
+
+    public static String json(Object data) {
+        return JsonHelper.createJsonFrom(data);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.rest.graphdb.RestAPIFacade;
+import org.neo4j.rest.graphdb.converter.RestEntityExtractor;
+import org.neo4j.rest.graphdb.converter.RestTableResultExtractor;
+import org.neo4j.rest.graphdb.traversal.RestPathParser;
+import org.neo4j.rest.graphdb.util.ArrayConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Conversion of already parsed server representations into entities and values, no requests are sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+    private RestAPIFacade restAPI;
+    private RestEntityExtractor entityExtractor;
+    private RestTableResultExtractor tableExtractor;
+    private ArrayConverter arrayConverter;
+    private Map<String, Object> cypherResult;
+    private Map<String, Object> node;
+    private Map<String, Object> path;
+    private List<Object> longs;
+    private List<Object> strings;
+
+    @Setup
+    public void setUp() {
+        restAPI = new RestAPIFacade(BenchmarkData.BASE_URI);
+        entityExtractor = new RestEntityExtractor(restAPI);
+        tableExtractor = new RestTableResultExtractor(entityExtractor);
+        arrayConverter = new ArrayConverter();
+        cypherResult = BenchmarkData.cypherResult(100);
+        node = BenchmarkData.node(42);
+        path = BenchmarkData.fullPath(10);
+        longs = new ArrayList<Object>();
+        strings = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            longs.add((long) i);
+            strings.add("value" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        restAPI.close();
+    }
+
+    @Benchmark
+    public Object extractTable() {
+        return tableExtractor.extract(cypherResult);
+    }
+
+    @Benchmark
+    public Object convertEntity() {
+        return entityExtractor.convertFromRepresentation(node);
+    }
+
+    @Benchmark
+    public Object longsToArray() {
+        return arrayConverter.toArray(longs);
+    }
+
+    @Benchmark
+    public Object stringsToArray() {
+        return arrayConverter.toArray(strings);
+    }
+
+    @Benchmark
+    public void parsePath(Blackhole blackhole) {
+        final Path parsed = RestPathParser.parse(path, restAPI);
+        for (Node pathNode : parsed.nodes()) {
+            blackhole.consume(pathNode);
+        }
+        blackhole.consume(parsed.lastRelationship());
+    }
+}
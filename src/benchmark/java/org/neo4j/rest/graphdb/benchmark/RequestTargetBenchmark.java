@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.neo4j.rest.graphdb.transport.ResourceCache;
+import org.neo4j.rest.graphdb.util.UriEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Resolving request targets and encoding index paths, the previous implementation against the current one.
+ * Run with {@code -prof gc} to compare the allocation rate per operation, no requests are sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestTargetBenchmark {
+    private static final Pattern ABSOLUTE = Pattern.compile("^https?://.*");
+    private static final String PATH = "batch";
+    private static final String KEY = "name";
+    private static final String VALUE = "Thomas Anderson";
+
+    private Client client;
+    private ResourceCache resources;
+
+    @Setup
+    public void setUp() {
+        client = Client.create();
+        resources = new ResourceCache(client, 256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.destroy();
+    }
+
+    @Benchmark
+    public WebResource resolveUncached() throws Exception {
+        final String target = ABSOLUTE.matcher(PATH).matches() ? PATH : BenchmarkData.BASE_URI + "/" + PATH;
+        return client.resource(new URI(target));
+    }
+
+    @Benchmark
+    public WebResource resolveCached() {
+        final String target = PATH.startsWith("http://") || PATH.startsWith("https://") ? PATH : BenchmarkData.BASE_URI + "/" + PATH;
+        return resources.resource(target);
+    }
+
+    @Benchmark
+    public String encodeUrlEncoder() throws Exception {
+        return "index/node/people/" + URLEncoder.encode(KEY, "utf-8").replaceAll("\\+", "%20") + "/" + URLEncoder.encode(VALUE, "utf-8").replaceAll("\\+", "%20");
+    }
+
+    @Benchmark
+    public String encodeUriEncoder() {
+        return "index/node/people/" + UriEncoder.encode(KEY) + "/" + UriEncoder.encode(VALUE);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.rest.graphdb.LocalTestServer;
+import org.neo4j.rest.graphdb.RestAPIFacade;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.util.DefaultConverter;
+import org.neo4j.rest.graphdb.util.QueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * End to end calls through a RestAPIFacade against an in-process server, so client, transport and
+ * server are measured together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RestApiThroughputBenchmark {
+    private static final String URI = "http://localhost:7473/db/data";
+    private static final int NODES = 1000;
+
+    private LocalTestServer server;
+    private RestAPIFacade restAPI;
+    private List<Long> ids;
+
+    @Setup
+    public void startServer() {
+        server = new LocalTestServer().withPropertiesFile("neo4j-server.properties");
+        server.start();
+        restAPI = new RestAPIFacade(URI);
+        ids = new ArrayList<Long>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            ids.add(restAPI.createNode(MapUtil.map("name", "node" + i, "index", i)).getId());
+        }
+    }
+
+    @TearDown
+    public void stopServer() {
+        restAPI.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public RestNode getNodeById() {
+        return restAPI.getNodeById(ids.get((int) (Thread.currentThread().getId() % NODES)));
+    }
+
+    /**
+     * more threads than pooled connections, sustained throughput depends on the connections being reused
+     */
+    @Benchmark
+    @Threads(200)
+    public RestNode getNodeByIdFromManyThreads() {
+        return restAPI.getNodeById(ids.get((int) (Thread.currentThread().getId() % NODES)));
+    }
+
+    @Benchmark
+    public RestNode createNode() {
+        return restAPI.createNode(MapUtil.map("name", "created"));
+    }
+
+    @Benchmark
+    public List<RestNode> getNodesByIds() {
+        return restAPI.getNodesByIds(ids.subList(0, 100));
+    }
+
+    /**
+     * the same 100 nodes as {@link #getNodesByIds()} loaded one request at a time, the baseline of the bulk fetch
+     */
+    @Benchmark
+    public List<RestNode> getNodeByIdLoop() {
+        final List<RestNode> nodes = new ArrayList<RestNode>(100);
+        for (Long id : ids.subList(0, 100)) {
+            nodes.add(restAPI.getNodeById(id));
+        }
+        return nodes;
+    }
+
+    @Benchmark
+    public void cypherQuery(Blackhole blackhole) {
+        final QueryResult<Map<String, Object>> result = restAPI.query("start n=node({ids}) return n.name as name", MapUtil.map("ids", ids.subList(0, 100)), new DefaultConverter());
+        for (Map<String, Object> row : result) {
+            blackhole.consume(row);
+        }
+    }
+}
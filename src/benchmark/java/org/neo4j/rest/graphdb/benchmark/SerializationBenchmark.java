@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.rest.graphdb.util.JsonHelper;
+import org.neo4j.rest.graphdb.util.StreamingJsonEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of a batch request body into a String before sending it, compared to streaming it straight into
+ * the request. Run with {@code -prof gc} to compare the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"100", "10000"})
+    public int operations;
+
+    private List<Map<String, Object>> batch;
+    private OutputStream stream;
+
+    @Setup
+    public void setUp() {
+        batch = new ArrayList<Map<String, Object>>(operations);
+        for (int i = 0; i < operations; i++) {
+            batch.add(MapUtil.map("method", "POST", "to", "/node", "body", MapUtil.map("name", "node" + i, "age", i), "id", i));
+        }
+        stream = new OutputStream() {
+            public void write(int b) { }
+
+            public void write(byte[] b, int off, int len) { }
+        };
+    }
+
+    @Benchmark
+    public void writeString() throws IOException {
+        stream.write(JsonHelper.createJsonFrom(batch).getBytes("UTF-8"));
+    }
+
+    @Benchmark
+    public void writeStreaming() throws IOException {
+        new StreamingJsonEntity(batch).write(stream);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.rest.graphdb.batch.BatchCallback;
+import org.neo4j.rest.graphdb.entity.RestEntity;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+import org.neo4j.rest.graphdb.index.RestIndex;
+import org.neo4j.rest.graphdb.traversal.RestTraverser;
+import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.ResultConverter;
+
+/**
+ * Asynchronous variant of the {@link RestAPI}, executed on a bounded worker pool. Every operation returns
+ * immediately with a future for its result, the calls themselves still block a worker of the pool.
+ * Results are converted exactly like the ones of the synchronous api. Operations are not part of a
+ * {@link BatchTransaction} that might be running on the calling thread.
+ */
+public interface AsyncRestAPI {
+    Future<RestNode> getNodeById(long id);
+
+    Future<RestRelationship> getRelationshipById(long id);
+
+    Future<RestNode> createNode(Map<String, Object> props);
+
+    Future<RestRelationship> createRelationship(Node startNode, Node endNode, RelationshipType type, Map<String, Object> props);
+
+    Future<Map<String, Object>> getPropertiesFromEntity(RestEntity entity);
+
+    Future<Void> setPropertyOnEntity(RestEntity entity, String key, Object value);
+
+    Future<Void> removeProperty(RestEntity entity, String key);
+
+    Future<Void> deleteEntity(RestEntity entity);
+
+    <T extends PropertyContainer> Future<Void> addToIndex(T entity, RestIndex index, String key, Object value);
+
+    <S extends PropertyContainer> Future<IndexHits<S>> queryIndex(String indexPath, Class<S> entityType);
+
+    Future<QueryResult<Map<String, Object>>> query(String statement, Map<String, Object> params, ResultConverter resultConverter);
+
+    Future<Iterable<Relationship>> getRelationships(RestNode restNode, String path);
+
+    Future<RestTraverser> traverse(RestNode restNode, Map<String, Object> description);
+
+    <T> Future<T> executeBatch(BatchCallback<T> batchCallback);
+
+    /**
+     * runs an arbitrary sequence of calls against the synchronous api and notifies the callback when done
+     */
+    <T> Future<T> submit(AsyncOperation<T> operation, AsyncCallback<T> callback);
+
+    RestAPI getRestAPI();
+
+    void close();
+
+    interface AsyncOperation<T> {
+        T execute(RestAPI restAPI);
+    }
+}
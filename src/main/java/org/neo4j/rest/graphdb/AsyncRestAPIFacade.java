@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.rest.graphdb.batch.BatchCallback;
+import org.neo4j.rest.graphdb.entity.RestEntity;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+import org.neo4j.rest.graphdb.index.RestIndex;
+import org.neo4j.rest.graphdb.traversal.RestTraverser;
+import org.neo4j.rest.graphdb.util.Config;
+import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.ResultConverter;
+
+/**
+ * Runs the calls of a {@link RestAPIFacade} on a small pool of worker threads sized to the connection pool,
+ * so many requests can be in flight while the callers carry on.
+ */
+public class AsyncRestAPIFacade implements AsyncRestAPI {
+    private final RestAPI restAPI;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    public AsyncRestAPIFacade(RestAPI restAPI) {
+        this(restAPI, createExecutor(maxConnectionsPerHost(restAPI)), true);
+    }
+
+    public AsyncRestAPIFacade(RestAPI restAPI, ExecutorService executor) {
+        this(restAPI, executor, false);
+    }
+
+    private AsyncRestAPIFacade(RestAPI restAPI, ExecutorService executor, boolean ownsExecutor) {
+        this.restAPI = restAPI;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static int maxConnectionsPerHost(RestAPI restAPI) {
+        if (restAPI instanceof RestAPIFacade) return ((RestAPIFacade) restAPI).getConfig().getMaxConnectionsPerHost();
+        return Config.getMaxConnectionsPerHost();
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "neo4j-rest-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public Future<RestNode> getNodeById(final long id) {
+        return submit(new AsyncOperation<RestNode>() {
+            public RestNode execute(RestAPI restAPI) {
+                return restAPI.getNodeById(id);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<RestRelationship> getRelationshipById(final long id) {
+        return submit(new AsyncOperation<RestRelationship>() {
+            public RestRelationship execute(RestAPI restAPI) {
+                return restAPI.getRelationshipById(id);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<RestNode> createNode(final Map<String, Object> props) {
+        return submit(new AsyncOperation<RestNode>() {
+            public RestNode execute(RestAPI restAPI) {
+                return restAPI.createNode(props);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<RestRelationship> createRelationship(final Node startNode, final Node endNode, final RelationshipType type, final Map<String, Object> props) {
+        return submit(new AsyncOperation<RestRelationship>() {
+            public RestRelationship execute(RestAPI restAPI) {
+                return restAPI.createRelationship(startNode, endNode, type, props);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<Map<String, Object>> getPropertiesFromEntity(final RestEntity entity) {
+        return submit(new AsyncOperation<Map<String, Object>>() {
+            public Map<String, Object> execute(RestAPI restAPI) {
+                return restAPI.getPropertiesFromEntity(entity);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<Void> setPropertyOnEntity(final RestEntity entity, final String key, final Object value) {
+        return submit(new AsyncOperation<Void>() {
+            public Void execute(RestAPI restAPI) {
+                restAPI.setPropertyOnEntity(entity, key, value);
+                return null;
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<Void> removeProperty(final RestEntity entity, final String key) {
+        return submit(new AsyncOperation<Void>() {
+            public Void execute(RestAPI restAPI) {
+                restAPI.removeProperty(entity, key);
+                return null;
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<Void> deleteEntity(final RestEntity entity) {
+        return submit(new AsyncOperation<Void>() {
+            public Void execute(RestAPI restAPI) {
+                restAPI.deleteEntity(entity);
+                return null;
+            }
+        }, null);
+    }
+
+    @Override
+    public <T extends PropertyContainer> Future<Void> addToIndex(final T entity, final RestIndex index, final String key, final Object value) {
+        return submit(new AsyncOperation<Void>() {
+            public Void execute(RestAPI restAPI) {
+                restAPI.addToIndex(entity, index, key, value);
+                return null;
+            }
+        }, null);
+    }
+
+    @Override
+    public <S extends PropertyContainer> Future<IndexHits<S>> queryIndex(final String indexPath, final Class<S> entityType) {
+        return submit(new AsyncOperation<IndexHits<S>>() {
+            public IndexHits<S> execute(RestAPI restAPI) {
+                return restAPI.queryIndex(indexPath, entityType);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<QueryResult<Map<String, Object>>> query(final String statement, final Map<String, Object> params, final ResultConverter resultConverter) {
+        return submit(new AsyncOperation<QueryResult<Map<String, Object>>>() {
+            public QueryResult<Map<String, Object>> execute(RestAPI restAPI) {
+                return restAPI.query(statement, params, resultConverter);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<Iterable<Relationship>> getRelationships(final RestNode restNode, final String path) {
+        return submit(new AsyncOperation<Iterable<Relationship>>() {
+            public Iterable<Relationship> execute(RestAPI restAPI) {
+                return restAPI.getRelationships(restNode, path);
+            }
+        }, null);
+    }
+
+    @Override
+    public Future<RestTraverser> traverse(final RestNode restNode, final Map<String, Object> description) {
+        return submit(new AsyncOperation<RestTraverser>() {
+            public RestTraverser execute(RestAPI restAPI) {
+                return restAPI.traverse(restNode, description);
+            }
+        }, null);
+    }
+
+    @Override
+    public <T> Future<T> executeBatch(final BatchCallback<T> batchCallback) {
+        return submit(new AsyncOperation<T>() {
+            public T execute(RestAPI restAPI) {
+                return restAPI.executeBatch(batchCallback);
+            }
+        }, null);
+    }
+
+    @Override
+    public <T> Future<T> submit(final AsyncOperation<T> operation, final AsyncCallback<T> callback) {
+        final FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+            public T call() throws Exception {
+                return operation.execute(restAPI);
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (callback == null || isCancelled()) return;
+                try {
+                    callback.onSuccess(get());
+                } catch (ExecutionException e) {
+                    callback.onFailure(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+
+    @Override
+    public RestAPI getRestAPI() {
+        return restAPI;
+    }
+
+    /**
+     * stops the worker threads after the submitted operations completed, the underlying {@link RestAPI} stays open
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+    }
+}
@@ -22,33 +22,142 @@ package org.neo4j.rest.graphdb;
 import org.neo4j.graphdb.Lock;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.rest.graphdb.batch.AsyncCommitter;
 import org.neo4j.rest.graphdb.batch.BatchRestAPI;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
-* @author mh
-* @since 03.05.12
-*/
+ * Records the operations of a transaction into one batch request which is sent when the transaction is finished
+ * successfully. A transaction belongs to one facade and is bound to the thread which began it, operations of that
+ * thread on that facade are recorded. To use a transaction on other threads, {@link #suspend()} it and
+ * {@link #resume()} it there, or record directly with {@link #getBatchRestAPI()}; it can be finished on any thread.
+ * No locks are held, so recording and finishing don't block other transactions or pin virtual threads.
+ * If the facade commits asynchronously, finishing hands the batch to its {@link AsyncCommitter} and returns,
+ * {@link #await()} waits for the batch to be executed.
+ * @author mh
+ * @since 03.05.12
+ */
 public class BatchTransaction implements Transaction {
-    private static ThreadLocal<BatchTransaction> current = new ThreadLocal<BatchTransaction>();
+    private final RestAPIFacade facade;
     private final BatchRestAPI batchRestAPI;
-    private Boolean success=null;
-    private int depth = 1;
+    private volatile Boolean success=null;
+    private final AtomicInteger depth = new AtomicInteger(1);
+    private volatile boolean finished;
+    private final AsyncCommitter committer;
+    private final long handle;
+    private volatile AsyncCommitter.Batch batch;
+    // the transaction this thread bound last on any facade, only for the deprecated static accessors
+    private static final ThreadLocal<BatchTransaction> lastBound = new ThreadLocal<BatchTransaction>();
 
-    public static BatchRestAPI getRestApi() {
-        final BatchTransaction currentTx = current.get();
-        if (currentTx !=null) return currentTx.batchRestAPI;
-        return null;
+    BatchTransaction(RestAPIFacade facade) {
+        this.facade = facade;
+        this.committer = facade.getAsyncCommitter();
+        if (committer == null) {
+            this.batchRestAPI = new BatchRestAPI(facade.getBaseUri(), facade);
+            this.handle = 0;
+        } else {
+            this.batchRestAPI = new BatchRestAPI(facade.getBaseUri(), facade, committer.newOperations());
+            this.handle = committer.open();
+        }
+    }
+
+    /**
+     * @return the transaction of the facade bound to the current thread or a new one bound to it, nested calls
+     * join the current transaction
+     */
+    public static BatchTransaction begin(RestAPIFacade facade) {
+        final BatchTransaction current = facade.currentTransaction();
+        if (current != null) {
+            current.depth.incrementAndGet();
+            return current;
+        }
+        final BatchTransaction transaction = new BatchTransaction(facade);
+        facade.bindTransaction(transaction);
+        lastBound.set(transaction);
+        return transaction;
+    }
+
+    /**
+     * @return a new transaction which is not bound to any thread, record with {@link #getBatchRestAPI()} or
+     * {@link #resume()} it on the recording thread
+     */
+    public static BatchTransaction beginDetached(RestAPIFacade facade) {
+        return new BatchTransaction(facade);
     }
 
+    /**
+     * @return the current transaction of the facade on this thread or null
+     */
+    public static BatchTransaction current(RestAPIFacade facade) {
+        return facade.currentTransaction();
+    }
+
+    /**
+     * @return the transaction the current thread began or resumed last, on any facade, or null
+     * @deprecated transactions belong to a facade, use {@link #current(RestAPIFacade)}
+     */
+    @Deprecated
     public static BatchTransaction current() {
-        return current.get();
+        final BatchTransaction transaction = lastBound.get();
+        if (transaction == null || transaction.finished) {
+            lastBound.remove();
+            return null;
+        }
+        return transaction;
+    }
+
+    /**
+     * @return the recording api of {@link #current()} or null
+     * @deprecated use {@link #getBatchRestAPI()} of {@link #current(RestAPIFacade)}
+     */
+    @Deprecated
+    public static BatchRestAPI getRestApi() {
+        final BatchTransaction transaction = current();
+        return transaction == null ? null : transaction.batchRestAPI;
     }
-    BatchTransaction(RestAPIFacade restAPI) {
-        if (current.get()!=null) throw new IllegalStateException("Transaction already in progress!");
-        this.batchRestAPI=createBatchRestAPI(restAPI);
-        current.set(this);
+
+    /**
+     * unbinds {@link #current()} from the current thread without finishing it, the transactions of other threads
+     * are not affected any more
+     * @deprecated use {@link #suspend()} or {@link #finish()}
+     */
+    @Deprecated
+    public static void shutdown() {
+        final BatchTransaction transaction = lastBound.get();
+        if (transaction != null) transaction.facade.unbindTransaction(transaction);
+        lastBound.remove();
     }
 
+    /**
+     * @return the api recording into this transaction, usable from any thread but not concurrently
+     */
+    public BatchRestAPI getBatchRestAPI() {
+        return batchRestAPI;
+    }
+
+    /**
+     * binds this transaction to the current thread, so the operations of the thread on the facade are recorded
+     */
+    public BatchTransaction resume() {
+        if (finished) throw new IllegalStateException("transaction already finished");
+        facade.bindTransaction(this);
+        lastBound.set(this);
+        return this;
+    }
+
+    /**
+     * unbinds this transaction from the current thread, it stays open and can be resumed or finished elsewhere
+     */
+    public BatchTransaction suspend() {
+        facade.unbindTransaction(this);
+        if (lastBound.get() == this) lastBound.remove();
+        return this;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
 
     @Override
     public void failure() {
@@ -62,24 +171,34 @@ public class BatchTransaction implements Transaction {
 
     @Override
     public void finish() {
-        depth--;
+        final int depth = this.depth.decrementAndGet();
         if (depth > 0) return; // unroll stack
         if (depth < 0) throw new IllegalStateException("transaction already finished");
-        try {
-        if (success!=null && success) {
-            final BatchTransaction currentTx = current.get();
-            if (currentTx!=null) {
-                current.remove();
-                currentTx.batchRestAPI.executeBatchRequest();
-            } else {
-                throw new IllegalStateException("Not in Transaction/BatchOperation");
-            }
-        }
-        } finally {
-            current.remove();
+        finished = true;
+        // a thread this transaction is still bound to drops it on its next access
+        facade.unbindTransaction(this);
+        if (lastBound.get() == this) lastBound.remove();
+        final boolean commit = success != null && success;
+        if (!commit) batchRestAPI.getRecordedOperations().close();
+        if (committer == null) {
+            if (commit) batchRestAPI.executeBatchRequest();
+        } else if (commit) {
+            batch = committer.submit(batchRestAPI, handle);
+        } else {
+            committer.discard(handle);
         }
     }
 
+    /**
+     * waits until the batch of this finished transaction was executed, returns at once if it was executed by
+     * {@link #finish()} or not at all
+     * @throws RuntimeException the failure of the batch
+     */
+    public void await() {
+        final AsyncCommitter.Batch batch = this.batch;
+        if (batch != null) batch.await();
+    }
+
     @Override
     public Lock acquireWriteLock(PropertyContainer propertyContainer) {
         throw new UnsupportedOperationException();
@@ -89,25 +208,4 @@ public class BatchTransaction implements Transaction {
     public Lock acquireReadLock(PropertyContainer propertyContainer) {
         throw new UnsupportedOperationException();
     }
-
-    public static synchronized BatchTransaction begin(RestAPIFacade facade) {
-        final BatchTransaction batchTransaction = current.get();
-        if (batchTransaction !=null) {
-            batchTransaction.depth++;
-            return batchTransaction;
-        }
-        final BatchTransaction transaction = new BatchTransaction(facade);
-        current.set(transaction);
-        return transaction;
-    }
-
-    private static BatchRestAPI createBatchRestAPI(RestAPIFacade facade) {
-
-        return new BatchRestAPI(facade.getBaseUri(),facade);
-    }
-
-    public static void shutdown() {
-        current.remove();
-        current = new ThreadLocal<BatchTransaction>();
-    }
 }
@@ -33,6 +33,10 @@ public class BatchTransactionManager implements TransactionManager,Transaction {
         this.restAPI = restAPI;
     }
 
+    private BatchTransaction current() {
+        return restAPI instanceof RestAPIFacade ? BatchTransaction.current((RestAPIFacade) restAPI) : null;
+    }
+
     @Override
     public void begin() throws NotSupportedException, SystemException {
         restAPI.beginTx();
@@ -40,7 +44,7 @@ public class BatchTransactionManager implements TransactionManager,Transaction {
 
     @Override
     public void commit() throws HeuristicMixedException, HeuristicRollbackException, IllegalStateException, RollbackException, SecurityException, SystemException {
-        final BatchTransaction current = BatchTransaction.current();
+        final BatchTransaction current = current();
         if (current==null) throw new IllegalStateException("Not in transaction");
         current.success();
         current.finish();
@@ -58,7 +62,7 @@ public class BatchTransactionManager implements TransactionManager,Transaction {
 
     @Override
     public int getStatus() throws SystemException {
-        final BatchTransaction current = BatchTransaction.current();
+        final BatchTransaction current = current();
         if (current==null) return 0;
         return Status.STATUS_ACTIVE;
     }
@@ -80,7 +84,7 @@ public class BatchTransactionManager implements TransactionManager,Transaction {
 
     @Override
     public void rollback() throws IllegalStateException, SecurityException, SystemException {
-        final BatchTransaction current = BatchTransaction.current();
+        final BatchTransaction current = current();
         if (current==null) throw new IllegalStateException("Not in transaction");
         current.failure();
         current.finish();
@@ -88,7 +92,7 @@ public class BatchTransactionManager implements TransactionManager,Transaction {
 
     @Override
     public void setRollbackOnly() throws IllegalStateException, SystemException {
-        final BatchTransaction current = BatchTransaction.current();
+        final BatchTransaction current = current();
         if (current==null) throw new IllegalStateException("Not in transaction");
         current.failure();
     }
@@ -29,7 +29,11 @@ import org.neo4j.rest.graphdb.batch.BatchRestAPI;
 import org.neo4j.rest.graphdb.converter.RelationshipIterableConverter;
 import org.neo4j.rest.graphdb.converter.RestEntityExtractor;
 import org.neo4j.rest.graphdb.converter.RestIndexHitsConverter;
+import org.neo4j.rest.graphdb.converter.StreamingTableResult;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicies;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicy;
 import org.neo4j.rest.graphdb.entity.RestEntity;
+import org.neo4j.rest.graphdb.entity.RestEntityCache;
 import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.entity.RestRelationship;
 import org.neo4j.rest.graphdb.index.IndexInfo;
@@ -43,14 +47,20 @@ import org.neo4j.rest.graphdb.services.PluginInvocation;
 import org.neo4j.rest.graphdb.services.RequestType;
 import org.neo4j.rest.graphdb.services.RestInvocationHandler;
 import org.neo4j.rest.graphdb.services.ServiceInvocation;
+import org.neo4j.rest.graphdb.transport.ClusterRouter;
+import org.neo4j.rest.graphdb.transport.RequestMetrics;
 import org.neo4j.rest.graphdb.traversal.RestTraversal;
 import org.neo4j.rest.graphdb.traversal.RestTraverser;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.Config;
 import org.neo4j.rest.graphdb.util.JsonHelper;
 import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.RestConfig;
 import org.neo4j.rest.graphdb.util.ResultConverter;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -63,20 +73,94 @@ public class ExecutingRestAPI implements RestAPI {
 
     protected RestRequest restRequest;
     private long propertyRefetchTimeInMillis = 1000;
+    private volatile PropertyRefreshPolicy propertyRefreshPolicy = PropertyRefreshPolicies.timeToLive(propertyRefetchTimeInMillis);
     protected final RestAPI facade;
+    private final RestEntityCache entityCache;
+    private final RestConfig config;
+    private volatile int fetchChunkSize;
+    private final ReadCoalescer readCoalescer;
 
     protected ExecutingRestAPI(String uri, RestAPI facade) {
-        this.facade = facade;
-        this.restRequest = createRestRequest(uri, null, null);
+        this(uri, null, null, facade, RestConfig.fromSystemProperties());
     }
 
     protected ExecutingRestAPI(String uri, String user, String password, RestAPI facade) {
+        this(uri, user, password, facade, RestConfig.fromSystemProperties());
+    }
+
+    protected ExecutingRestAPI(String uri, String user, String password, RestAPI facade, RestConfig config) {
         this.facade = facade;
+        this.config = config;
+        this.fetchChunkSize = config.getFetchChunkSize();
         this.restRequest = createRestRequest(uri, user, password);
+        this.entityCache = createEntityCache();
+        this.readCoalescer = createReadCoalescer();
+    }
+
+    protected ExecutingRestAPI(ClusterRouter router, String user, String password, RestAPI facade, RestConfig config) {
+        this.facade = facade;
+        this.config = config;
+        this.fetchChunkSize = config.getFetchChunkSize();
+        this.restRequest = new ExecutingRestRequest(router.getMembers().get(0).getUri(), user, password, router, config);
+        this.entityCache = createEntityCache();
+        this.readCoalescer = createReadCoalescer();
+    }
+
+    public RestConfig getConfig() {
+        return config;
+    }
+
+    protected RestEntityCache createEntityCache() {
+        final int size = config.getEntityCacheSize();
+        return size > 0 ? new RestEntityCache(size, propertyRefetchTimeInMillis) : null;
+    }
+
+    /**
+     * @return the entity cache shared by all users of the facade or null if caching is disabled
+     */
+    public RestEntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    protected ReadCoalescer createReadCoalescer() {
+        final long window = config.getReadCoalesceWindow();
+        return window > 0 ? new ReadCoalescer(this, window, config.getReadCoalesceSize()) : null;
+    }
+
+    /**
+     * @return the coalescer of concurrent single reads or null if coalescing is disabled
+     */
+    public ReadCoalescer getReadCoalescer() {
+        return readCoalescer;
+    }
+
+    private Map<?, ?> cached(Map<?, ?> data) {
+        final RestEntityCache cache = getEntityCache();
+        if (cache != null) cache.put(data);
+        return data;
+    }
+
+    protected void invalidate(RestEntity entity) {
+        final RestEntityCache cache = getEntityCache();
+        if (cache != null) cache.invalidate(entity.getUri());
+    }
+
+    /**
+     * @return the router spreading requests across a cluster or null if this api talks to a single server
+     */
+    public ClusterRouter getClusterRouter() {
+        return restRequest instanceof ExecutingRestRequest ? ((ExecutingRestRequest) restRequest).getRouter() : null;
+    }
+
+    /**
+     * @return the request metrics or null if they are not enabled via {@link Config#METRICS}
+     */
+    public RequestMetrics getRequestMetrics() {
+        return restRequest instanceof ExecutingRestRequest ? ((ExecutingRestRequest) restRequest).getMetrics() : null;
     }
 
     protected RestRequest createRestRequest(String uri, String user, String password) {
-        return new ExecutingRestRequest(uri, user, password);
+        return new ExecutingRestRequest(uri, user, password, null, config);
     }
 
     @Override
@@ -86,31 +170,162 @@ public class ExecutingRestAPI implements RestAPI {
 
     @Override
     public RestNode getNodeById(long id) {
+        final RestEntityCache cache = getEntityCache();
+        if (cache != null) {
+            final RestEntityCache.CachedData entry = cache.getNodeEntry(id);
+            if (entry != null) return fetchedAt(new RestNode(entry.getData(), facade), entry);
+        }
+        if (readCoalescer != null) {
+            final Map<?, ?> data = readCoalescer.get("node", id);
+            if (data != null) return new RestNode(data, facade);
+        }
         RequestResult response = restRequest.get("node/" + id);
         if (response.statusIs(Status.NOT_FOUND)) {
+            response.close();
             throw new NotFoundException("" + id);
         }
-        return new RestNode(response.toMap(), facade);
+        return new RestNode(cached(response.toMap()), facade);
     }
 
     @Override
     public RestRelationship getRelationshipById(long id) {
+        final RestEntityCache cache = getEntityCache();
+        if (cache != null) {
+            final RestEntityCache.CachedData entry = cache.getRelationshipEntry(id);
+            if (entry != null) return fetchedAt(new RestRelationship(entry.getData(), facade), entry);
+        }
+        if (readCoalescer != null) {
+            final Map<?, ?> data = readCoalescer.get("relationship", id);
+            if (data != null) return new RestRelationship(data, facade);
+        }
         RequestResult requestResult = restRequest.get("relationship/" + id);
         if (requestResult.statusIs(Status.NOT_FOUND)) {
+            requestResult.close();
             throw new NotFoundException("" + id);
         }
-        return new RestRelationship(requestResult.toMap(), facade);
+        return new RestRelationship(cached(requestResult.toMap()), facade);
+    }
+
+    /**
+     * the properties of an entity built from the cache are as old as the cache entry, so they are refreshed
+     * when the entry would have expired
+     */
+    private static <T extends RestEntity> T fetchedAt(T entity, RestEntityCache.CachedData entry) {
+        entity.setLastTimeFetchedPropertyData(entry.getFetchedAt());
+        return entity;
+    }
+
+    @Override
+    public List<RestNode> getNodesByIds(Collection<Long> ids) {
+        final List<RestNode> nodes = new ArrayList<RestNode>(ids.size());
+        for (Map<?, ?> data : fetchByIds("node", ids)) {
+            nodes.add(new RestNode(data, facade));
+        }
+        return nodes;
+    }
+
+    @Override
+    public List<RestRelationship> getRelationshipsByIds(Collection<Long> ids) {
+        final List<RestRelationship> relationships = new ArrayList<RestRelationship>(ids.size());
+        for (Map<?, ?> data : fetchByIds("relationship", ids)) {
+            relationships.add(new RestRelationship(data, facade));
+        }
+        return relationships;
+    }
+
+    List<Map<?, ?>> fetchByIds(String type, Collection<Long> ids) {
+        final RestEntityCache cache = getEntityCache();
+        final Map<Long, Map<?, ?>> loaded = new HashMap<Long, Map<?, ?>>(ids.size());
+        final Set<Long> missing = new LinkedHashSet<Long>();
+        for (Long id : ids) {
+            if (loaded.containsKey(id) || missing.contains(id)) continue;
+            final Map<?, ?> data = cache == null ? null : type.equals("node") ? cache.getNode(id) : cache.getRelationship(id);
+            if (data != null) loaded.put(id, data);
+            else missing.add(id);
+        }
+        final List<Long> chunk = new ArrayList<Long>(Math.min(missing.size(), fetchChunkSize));
+        for (Long id : missing) {
+            chunk.add(id);
+            if (chunk.size() == fetchChunkSize) {
+                fetchChunk(type, chunk, loaded);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) fetchChunk(type, chunk, loaded);
+
+        final List<Map<?, ?>> result = new ArrayList<Map<?, ?>>(ids.size());
+        for (Long id : ids) {
+            result.add(loaded.get(id));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fetchChunk(String type, List<Long> ids, Map<Long, Map<?, ?>> loaded) {
+        final Collection<Map<String, Object>> batchRequestData = new ArrayList<Map<String, Object>>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            batchRequestData.add(MapUtil.map("method", "GET", "to", "/" + type + "/" + ids.get(i), "id", i));
+        }
+        final RequestResult response = batch(batchRequestData);
+        final Object result;
+        try {
+            result = response.toEntity();
+        } finally {
+            response.close();
+        }
+        if (RestResultException.isExceptionResult(result)) {
+            // the batch failed as a whole, the response doesn't tell which operation failed
+            final Long missing = findMissing(type, ids);
+            if (missing != null) throw new NotFoundException(type + " " + missing);
+            throw new RestResultException(result);
+        }
+        for (Map<String, Object> entry : (Collection<Map<String, Object>>) result) {
+            final Long id = ids.get(((Number) entry.get("id")).intValue());
+            final Object status = entry.get("status");
+            if (status instanceof Number && ((Number) status).intValue() == Status.NOT_FOUND.getStatusCode()) {
+                throw new NotFoundException(type + " " + id);
+            }
+            loaded.put(id, cached((Map<?, ?>) entry.get("body")));
+        }
+    }
+
+    /**
+     * @return the first of the ids that doesn't exist or null, checked one by one after a fetch failed
+     */
+    private Long findMissing(String type, List<Long> ids) {
+        for (Long id : ids) {
+            final RequestResult result = restRequest.get(type + "/" + id);
+            try {
+                if (result.statusIs(Status.NOT_FOUND)) return id;
+            } finally {
+                result.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param fetchChunkSize the number of ids loaded with one batch request by {@link #getNodesByIds}
+     * and {@link #getRelationshipsByIds}
+     */
+    public void setFetchChunkSize(int fetchChunkSize) {
+        if (fetchChunkSize < 1) throw new IllegalArgumentException("Fetch chunk size must be positive, got " + fetchChunkSize);
+        this.fetchChunkSize = fetchChunkSize;
     }
 
 
     @Override
     public RestNode createNode(Map<String, Object> props) {
         RequestResult result = restRequest.post("node", props);
-        RestNode node = createRestNode(result);
-        if (node==null) {
-            throw RestResultException.create(result);
+        try {
+            RestNode node = createRestNode(result);
+            if (node==null) {
+                throw RestResultException.create(result);
+            }
+            return node;
+        } finally {
+            result.close();
         }
-        return node;
     }
 
     @Override
@@ -118,7 +333,7 @@ public class ExecutingRestAPI implements RestAPI {
         if (result.statusIs(CREATED)) {
             final String location = result.getLocation();
             if (result.isMap()) {
-                return new RestNode(result.toMap(), facade);
+                return new RestNode(cached(result.toMap()), facade);
             }
             return new RestNode(location, facade);
         }
@@ -126,6 +341,7 @@ public class ExecutingRestAPI implements RestAPI {
             return new RestNode(result.toMap(), facade);
         }
         if (result.statusIs(Status.NOT_FOUND)) {
+            result.close();
             throw new NotFoundException("Node not found");
         }
 //        final int status = result.getStatus();
@@ -153,6 +369,7 @@ public class ExecutingRestAPI implements RestAPI {
             throw new RuntimeException("Error creating relationship " + status+" "+requestResult.getText());
         }
         final String location = requestResult.getLocation();
+        requestResult.close();
         return new RestRelationship(location, facade);
     }
 
@@ -171,7 +388,7 @@ public class ExecutingRestAPI implements RestAPI {
         Map<String,Object> data=new HashMap<String, Object>();
         data.put("name",indexName);
         data.put("config",config);
-        restRequest.post("index/" + type, data);
+        restRequest.post("index/" + type, data).close();
     }
 
     @Override
@@ -199,16 +416,21 @@ public class ExecutingRestAPI implements RestAPI {
     @Override
     public boolean isAutoIndexingEnabled(Class<? extends PropertyContainer> clazz) {
         RequestResult response = getRestRequest().get(buildPathAutoIndexerStatus(clazz));
-        if (response.statusIs(Response.Status.OK)) {
-            return Boolean.parseBoolean(response.getText());
-        } else {
-            throw new IllegalStateException("received " + response);
+        try {
+            if (response.statusIs(Response.Status.OK)) {
+                return Boolean.parseBoolean(response.getText());
+            } else {
+                throw new IllegalStateException("received " + response);
+            }
+        } finally {
+            response.close();
         }
     }
 
     @Override
     public void setAutoIndexingEnabled(Class<? extends PropertyContainer> clazz, boolean enabled) {
         RequestResult response = getRestRequest().put(buildPathAutoIndexerStatus(clazz), enabled);
+        response.close();
         if (response.statusOtherThan(Status.NO_CONTENT)) {
             throw new IllegalStateException("received " + response);
         }
@@ -228,6 +450,7 @@ public class ExecutingRestAPI implements RestAPI {
             // StreamJsonHelper.writeJsonTo which quotes a given string
             InputStream stream = new ByteArrayInputStream(s.getBytes("UTF-8"));
             RequestResult response = getRestRequest().post(buildPathAutoIndexerProperties(forClass).toString(), stream);
+            response.close();
             if (response.statusOtherThan(Status.NO_CONTENT)) {
                 throw new IllegalStateException("received " + response);
             }
@@ -240,6 +463,7 @@ public class ExecutingRestAPI implements RestAPI {
     @Override
     public void stopAutoIndexingProperty(Class forClass, String s) {
         RequestResult response = getRestRequest().delete(buildPathAutoIndexerProperties(forClass).append("/").append(s).toString());
+        response.close();
         if (response.statusOtherThan(Status.NO_CONTENT)) {
             throw new IllegalStateException("received " + response);
         }
@@ -264,7 +488,7 @@ public class ExecutingRestAPI implements RestAPI {
     }
 
     private BatchRestAPI current() {
-        return BatchTransaction.getRestApi();
+        return facade instanceof RestAPIFacade ? ((RestAPIFacade) facade).currentBatchRestAPI() : null;
     }
 
 
@@ -281,6 +505,7 @@ public class ExecutingRestAPI implements RestAPI {
 
         RequestResult response = restRequest.get(referenceNodeUri);
         if (response.statusIs(Status.NOT_FOUND)) {
+            response.close();
             throw new NotFoundException("Reference node not available");
         }
         return new RestNode(response.toMap(), facade);
@@ -297,6 +522,18 @@ public class ExecutingRestAPI implements RestAPI {
 
     public void setPropertyRefetchTimeInMillis(long propertyRefetchTimeInMillis) {
         this.propertyRefetchTimeInMillis = propertyRefetchTimeInMillis;
+        this.propertyRefreshPolicy = PropertyRefreshPolicies.timeToLive(propertyRefetchTimeInMillis);
+        if (entityCache != null) entityCache.setTtlMillis(propertyRefetchTimeInMillis);
+    }
+
+    @Override
+    public PropertyRefreshPolicy getPropertyRefreshPolicy() {
+        return propertyRefreshPolicy;
+    }
+
+    public void setPropertyRefreshPolicy(PropertyRefreshPolicy propertyRefreshPolicy) {
+        if (propertyRefreshPolicy == null) throw new IllegalArgumentException("Property refresh policy must not be null");
+        this.propertyRefreshPolicy = propertyRefreshPolicy;
     }
 
 
@@ -305,7 +542,7 @@ public class ExecutingRestAPI implements RestAPI {
 /*
         final BatchTransaction transaction = beginTx();
         try {
-            T batchResult = batchCallback.recordBatch(transaction.getRestApi());
+            T batchResult = batchCallback.recordBatch(transaction.getBatchRestAPI());
             transaction.success();
             return batchResult;
         } finally {
@@ -335,13 +572,15 @@ public class ExecutingRestAPI implements RestAPI {
         if (response.statusIs(Response.Status.OK)) {
             return new RestIndexHitsConverter(facade, entityType).convertFromRepresentation(response);
         } else {
+            response.close();
             return new SimpleIndexHits<S>(Collections.emptyList(), 0, entityType, facade);
         }
     }
     
     @Override
     public void deleteEntity(RestEntity entity) {
-        getRestRequest().with(entity.getUri()).delete( "" );
+        getRestRequest().with(entity.getUri()).delete( "" ).close();
+        invalidate(entity);
     }
     @Override
     public IndexInfo indexInfo(final String indexType) {
@@ -351,19 +590,27 @@ public class ExecutingRestAPI implements RestAPI {
     
     @Override
     public void setPropertyOnEntity(RestEntity entity, String key, Object value) {
-        getRestRequest().with(entity.getUri()).put( "properties/" + key, value);
+        getRestRequest().with(entity.getUri()).put( "properties/" + key, value).close();
+        invalidate(entity);
         entity.invalidatePropertyData();
     }
     
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Object> getPropertiesFromEntity(RestEntity entity){
-        RequestResult response = getRestRequest().with(entity.getUri()).get("properties");
+        final String eTag = getPropertyRefreshPolicy().isConditional() ? entity.getPropertyDataETag() : null;
+        final RestRequest request = getRestRequest().with(entity.getUri());
+        RequestResult response = eTag == null ? request.get("properties") : request.getIfNoneMatch("properties", eTag);
+        if (response.isNotModified()) {
+            return null;
+        }
         Map<String, Object> properties;
         boolean ok = response.statusIs( Status.OK );
         if ( ok ) {
+            entity.setPropertyDataETag(response.getETag());
             properties = (Map<String, Object>) response.toMap(  );
         } else {
+            response.close();
             properties = Collections.emptyMap();
         }
        
@@ -371,7 +618,7 @@ public class ExecutingRestAPI implements RestAPI {
     }
 
     private void deleteIndex(String indexPath) {
-        getRestRequest().delete(indexPath);
+        getRestRequest().delete(indexPath).close();
     }
     
     @Override
@@ -408,6 +655,7 @@ public class ExecutingRestAPI implements RestAPI {
         }
         final Map<String, Object> data = MapUtil.map("key", key, "value", value, "uri", uri);       
         final RequestResult result = getRestRequest().post(index.indexPath(), data);
+        result.close();
         if (result.statusOtherThan(Status.CREATED)) throw new RuntimeException(String.format("Error adding element %d %s %s to index %s", restEntity.getId(), key, value, index.getIndexName()));
     }
 
@@ -421,19 +669,32 @@ public class ExecutingRestAPI implements RestAPI {
         }
         final Map<String, Object> data = MapUtil.map("key", key, "value", value, "uri", uri);
         final RequestResult result = getRestRequest().post(index.uniqueIndexPath(), data);
-        if (result.statusIs(Response.Status.CREATED)) {
-            if (index.getEntityType().equals(Node.class)) return (T)createRestNode(result);
-            if (index.getEntityType().equals(Relationship.class)) return (T)createRestRelationship(result,restEntity);
-        }
-        if (result.statusIs(Response.Status.OK)) {
-            return (T)createExtractor().convertFromRepresentation(result);
+        try {
+            if (result.statusIs(Response.Status.CREATED)) {
+                if (index.getEntityType().equals(Node.class)) return (T)createRestNode(result);
+                if (index.getEntityType().equals(Relationship.class)) return (T)createRestRelationship(result,restEntity);
+            }
+            if (result.statusIs(Response.Status.OK)) {
+                return (T)createExtractor().convertFromRepresentation(result);
+            }
+            throw new RuntimeException(String.format("Error adding element %d %s %s to index %s due to : %s", restEntity.getId(), key, value, index.getIndexName(),result.getText()));
+        } finally {
+            result.close();
         }
-        throw new RuntimeException(String.format("Error adding element %d %s %s to index %s due to : %s", restEntity.getId(), key, value, index.getIndexName(),result.getText()));
     }
 
     @Override
     public Map<?, ?> getData(RestEntity entity) {
-        return getRestRequest().get(entity.getUri()).toMap();
+        final RestEntityCache cache = getEntityCache();
+        if (cache != null) {
+            final Map<?, ?> data = cache.get(entity.getUri());
+            if (data != null) return data;
+        }
+        if (readCoalescer != null) {
+            final Map<?, ?> data = readCoalescer.get(entity.getUri());
+            if (data != null) return data;
+        }
+        return cached(getRestRequest().get(entity.getUri()).toMap());
     }
 
     @Override
@@ -443,7 +704,8 @@ public class ExecutingRestAPI implements RestAPI {
 
     @Override
     public void removeProperty(RestEntity entity, String key) {
-        restRequest.with(entity.getUri()).delete("properties/" + key);
+        restRequest.with(entity.getUri()).delete("properties/" + key).close();
+        invalidate(entity);
         entity.invalidatePropertyData();
     }
 
@@ -456,10 +718,14 @@ public class ExecutingRestAPI implements RestAPI {
         if (index==null || key == null || value==null) throw new IllegalArgumentException("Unique index "+index+" key "+key+" value must not be null");
         final Map<String, Object> data = MapUtil.map("key", key, "value", value, "properties", properties);
         final RequestResult result = getRestRequest().post(index.uniqueIndexPath(), data);
-        RestNode node = createRestNode(result);
-        if (node!=null) return node;
-        String message=String.format("Error retrieving or creating node for key %s and value %s with index %s due to : %s ", key, value, index.getIndexName(), result.getText());
-        throw RestResultException.create(result,message);
+        try {
+            RestNode node = createRestNode(result);
+            if (node!=null) return node;
+            String message=String.format("Error retrieving or creating node for key %s and value %s with index %s due to : %s ", key, value, index.getIndexName(), result.getText());
+            throw RestResultException.create(result,message);
+        } finally {
+            result.close();
+        }
     }
 
     @Override
@@ -468,10 +734,14 @@ public class ExecutingRestAPI implements RestAPI {
         if (start == null || end == null || type == null) throw new IllegalArgumentException("Neither start, end nore type must be null");
         final Map<String, Object> data = MapUtil.map("key", key, "value", value, "properties", properties,"start",start.getUri(), "end",end.getUri(), "type",type);
         final RequestResult result = getRestRequest().post(index.uniqueIndexPath(), data);
-        if (result.statusIs(Response.Status.CREATED) || result.statusIs(Response.Status.OK)) {
-            return (RestRelationship)createExtractor().convertFromRepresentation(result);
+        try {
+            if (result.statusIs(Response.Status.CREATED) || result.statusIs(Response.Status.OK)) {
+                return (RestRelationship)createExtractor().convertFromRepresentation(result);
+            }
+            throw new RuntimeException(String.format("Error retrieving or creating relationship for key %s and value %s with index %s with details: %s", key, value, index.getIndexName(), result.getText()));
+        } finally {
+            result.close();
         }
-        throw new RuntimeException(String.format("Error retrieving or creating relationship for key %s and value %s with index %s with details: %s", key, value, index.getIndexName(), result.getText()));
     }
 
     public <T> T getPlugin(Class<T> type){
@@ -484,9 +754,14 @@ public class ExecutingRestAPI implements RestAPI {
      }
 
     public Map<?, ?> query(String statement, Map<String, Object> params) {
-        params =  (params==null) ? Collections.<String,Object>emptyMap() : params;
-        final RequestResult requestResult = getRestRequest().post("cypher", MapUtil.map("query", statement, "params", params));
-        return getRestRequest().toMap(requestResult);
+        final CallTrace trace = CallTrace.begin("query", statement, config.getSlowOperationThreshold());
+        try {
+            params =  (params==null) ? Collections.<String,Object>emptyMap() : params;
+            final RequestResult requestResult = getRestRequest().post("cypher", MapUtil.map("query", statement, "params", params));
+            return getRestRequest().toMap(requestResult);
+        } finally {
+            if (trace != null) trace.finish();
+        }
     }
 
     @Override
@@ -499,16 +774,40 @@ public class ExecutingRestAPI implements RestAPI {
     @Override
     public RestTraverser traverse(RestNode restNode, Map<String, Object> description) {
         final RequestResult result = getRestRequest().with(restNode.getUri()).post("traverse/" + FULLPATH, description);
-        if (result.statusOtherThan(Response.Status.OK)) throw new RuntimeException(String.format("Error executing traversal: %d %s",result.getStatus(), description));
-        final Object col = result.toEntity();
+        final Object col;
+        try {
+            if (result.statusOtherThan(Response.Status.OK)) {
+                throw new RuntimeException(String.format("Error executing traversal: %d %s",result.getStatus(), description));
+            }
+            col = result.toEntity();
+        } finally {
+            result.close();
+        }
         if (!(col instanceof Collection)) throw new RuntimeException(String.format("Unexpected traversal result, %s instead of collection", col!=null ? col.getClass() : null));
         return new RestTraverser((Collection) col,restNode.getRestApi());
     }
 
     public QueryResult<Map<String, Object>> query(String statement, Map<String, Object> params, ResultConverter resultConverter) {
-        final Map<?, ?> resultMap = query(statement, params);
-        if (RestResultException.isExceptionResult(resultMap)) throw new RestResultException(resultMap);
-        return new RestQueryResult(resultMap, facade, resultConverter);
+        CallTrace trace = CallTrace.begin("query", statement, config.getSlowOperationThreshold());
+        try {
+            params =  (params==null) ? Collections.<String,Object>emptyMap() : params;
+            final RequestResult requestResult = getRestRequest().post("cypher", MapUtil.map("query", statement, "params", params));
+            if (config.isStreamQueryResults() && requestResult.isStreaming() && requestResult.statusIs(Status.OK)) {
+                // the rows are parsed and converted while the caller iterates, the result finishes the trace
+                final CallTrace rowsTrace = trace;
+                trace = null;
+                if (rowsTrace != null) rowsTrace.detach();
+                return new RestQueryResult(new StreamingTableResult(requestResult, createExtractor(), rowsTrace), resultConverter);
+            }
+            final Map<?, ?> resultMap = getRestRequest().toMap(requestResult);
+            if (RestResultException.isExceptionResult(resultMap)) throw new RestResultException(resultMap);
+            final long start = CallTrace.start();
+            final RestQueryResult result = new RestQueryResult(resultMap, facade, resultConverter);
+            CallTrace.end(CallTrace.Phase.CONVERT, start);
+            return result;
+        } finally {
+            if (trace != null) trace.finish();
+        }
     }
 
     public QueryResult<Object> run(String statement, Map<String, Object> params, ResultConverter resultConverter) {
@@ -535,4 +834,11 @@ public class ExecutingRestAPI implements RestAPI {
     public RequestResult batch(Collection<Map<String, Object>> batchRequestData) {
         return restRequest.post("batch",batchRequestData);
     }
+
+    /**
+     * posts a batch request whose operations are written directly to the connection
+     */
+    public RequestResult batch(StreamingOutput batchRequestData) {
+        return restRequest.post("batch",batchRequestData);
+    }
 }
@@ -20,24 +20,33 @@
 package org.neo4j.rest.graphdb;
 
 import java.io.*;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLEncoder;
 import java.util.Map;
-import java.util.regex.Pattern;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.sun.jersey.api.client.filter.LoggingFilter;
 import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.rest.graphdb.transport.ClusterRouter;
+import org.neo4j.rest.graphdb.transport.ConcurrencyLimiter;
+import org.neo4j.rest.graphdb.transport.ConnectionPool;
+import org.neo4j.rest.graphdb.transport.HedgingFilter;
+import org.neo4j.rest.graphdb.transport.RequestMetrics;
+import org.neo4j.rest.graphdb.transport.ResourceCache;
+import org.neo4j.rest.graphdb.util.CallTrace;
 import org.neo4j.rest.graphdb.util.Config;
-import org.neo4j.rest.graphdb.util.JsonHelper;
+import org.neo4j.rest.graphdb.util.RestConfig;
+import org.neo4j.rest.graphdb.util.StreamingJsonEntity;
+import org.neo4j.rest.graphdb.util.UriEncoder;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandler;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.WebResource.Builder;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 
@@ -47,18 +56,49 @@ public class ExecutingRestRequest implements RestRequest {
     private final String baseUri;
     private final UserAgent userAgent = new UserAgent();
     private final Client client;
-
-    private static final Pattern pattern = Pattern.compile("^https?://.*");
+    private final ConnectionPool connectionPool;
+    private final ClusterRouter router;
+    private final HedgingFilter hedging;
+    private final ConcurrencyLimiter limiter;
+    private final RequestMetrics metrics;
+    private final boolean streaming;
+    private final ResourceCache resources;
+    private final RestConfig config;
 
     public ExecutingRestRequest( String baseUri ) {
         this( baseUri, null, null );
     }
 
     public ExecutingRestRequest( String baseUri, String username, String password ) {
+        this( baseUri, username, password, null );
+    }
+
+    /**
+     * @param router spreads the requests across the members of a cluster, baseUri has to be one of its members
+     */
+    public ExecutingRestRequest( String baseUri, String username, String password, ClusterRouter router ) {
+        this( baseUri, username, password, router, RestConfig.fromSystemProperties() );
+    }
+
+    /**
+     * @param router spreads the requests across the members of a cluster or null to send all requests to baseUri
+     */
+    public ExecutingRestRequest( String baseUri, String username, String password, ClusterRouter router, RestConfig config ) {
         this.baseUri = uriWithoutSlash( baseUri );
+        this.config = config;
+        this.streaming = config.isStreaming();
+        this.connectionPool = createConnectionPool();
+        this.router = router;
+        this.hedging = createHedgingFilter();
+        this.limiter = createConcurrencyLimiter();
+        this.metrics = createRequestMetrics();
         client = createClient();
         addAuthFilter(username, password);
-
+        if (router != null) {
+            router.setClient(client);
+        }
+        // created last, resources only see the filters which were added to the client before
+        this.resources = new ResourceCache(client, 256);
     }
 
     protected void addAuthFilter(String username, String password) {
@@ -66,21 +106,83 @@ public class ExecutingRestRequest implements RestRequest {
         client.addFilter( new HTTPBasicAuthFilter( username, password ) );
     }
 
+    protected ConnectionPool createConnectionPool() {
+        return new ConnectionPool(config.getMaxConnections(), config.getMaxConnectionsPerHost(), config.getConnectionWaitTimeout(), config.getConnectionKeepAlive());
+    }
+
+    /**
+     * @return the filter hedging slow GET requests or null if hedging is not enabled via {@link Config#HEDGE_PERCENTILE}
+     */
+    protected HedgingFilter createHedgingFilter() {
+        final double percentile = config.getHedgePercentile();
+        return percentile > 0 ? new HedgingFilter(percentile, config.getHedgeMinDelay()) : null;
+    }
+
+    /**
+     * @return the limiter adapting the number of concurrent requests to the server latency or null if it is not
+     * enabled via {@link Config#ADAPTIVE_LIMIT}
+     */
+    protected ConcurrencyLimiter createConcurrencyLimiter() {
+        if (!config.useAdaptiveLimit()) return null;
+        return new ConcurrencyLimiter(config.getAdaptiveLimitInitial(), 1, config.getMaxConnectionsPerHost(), 2.0, config.getAdaptiveLimitQueueTimeout());
+    }
+
+    /**
+     * @return the metrics recorder published via jmx or null if it is not enabled via {@link Config#METRICS}
+     */
+    protected RequestMetrics createRequestMetrics() {
+        if (!config.useMetrics()) return null;
+        final RequestMetrics metrics = new RequestMetrics();
+        metrics.register(baseUri);
+        return metrics;
+    }
+
+    /**
+     * the transport used to talk to the server, override to plug in a different http client
+     */
+    protected ClientHandler createClientHandler() {
+        if (connectionPool == null) return new URLConnectionClientHandler();
+        return connectionPool.createClientHandler(config.getConnectTimeout(), config.getReadTimeout());
+    }
+
     protected Client createClient() {
-        Client client = Client.create();
-        client.setConnectTimeout(Config.getConnectTimeout());
-        client.setReadTimeout(Config.getReadTimeout());
+        Client client = new Client(createClientHandler());
+        if (connectionPool != null) {
+            client.addFilter(connectionPool);
+        }
+        if (limiter != null) {
+            client.addFilter(limiter);
+        }
+        if (router != null) {
+            client.addFilter(router);
+        }
+        if (hedging != null) {
+            client.addFilter(hedging);
+        }
+        if (metrics != null) {
+            client.addFilter(metrics);
+        }
+        client.setConnectTimeout(config.getConnectTimeout());
+        client.setReadTimeout(config.getReadTimeout());
         client.setChunkedEncodingSize(8*1024);
         userAgent.install(client);
-        if (Config.useLoggingFilter()) {
+        if (config.useLoggingFilter()) {
             client.addFilter(new LoggingFilter());
         }
         return client;
     }
 
-    private ExecutingRestRequest( String uri, Client client ) {
+    private ExecutingRestRequest( String uri, Client client, ConnectionPool connectionPool, ClusterRouter router, HedgingFilter hedging, ConcurrencyLimiter limiter, RequestMetrics metrics, boolean streaming, ResourceCache resources, RestConfig config ) {
         this.baseUri = uriWithoutSlash( uri );
         this.client = client;
+        this.connectionPool = connectionPool;
+        this.router = router;
+        this.hedging = hedging;
+        this.limiter = limiter;
+        this.metrics = metrics;
+        this.streaming = streaming;
+        this.resources = resources;
+        this.config = config;
     }
 
     protected String uriWithoutSlash( String uri ) {
@@ -88,23 +190,35 @@ public class ExecutingRestRequest implements RestRequest {
     }
 
     public static String encode( Object value ) {
-        if ( value == null ) return "";
-        try {
-            return URLEncoder.encode( value.toString(), "utf-8" ).replaceAll( "\\+", "%20" );
-        } catch ( UnsupportedEncodingException e ) {
-            throw new RuntimeException( e );
-        }
+        return UriEncoder.encode( value );
     }
 
 
     private Builder builder( String path ) {
-        WebResource resource = client.resource( uri( pathOrAbsolute( path ) ) );
-        if (Config.streamingIsEnabled()) return resource.accept(STREAMING_JSON_TYPE).header("X-Stream","true");
+        WebResource resource = resources.resource( pathOrAbsolute( path ) );
+        if (streaming) return resource.accept(STREAMING_JSON_TYPE).header("X-Stream","true");
         return resource.accept(APPLICATION_JSON_TYPE);
     }
 
+    private RequestResult extract(ClientResponse response, long start) {
+        final RequestResult result;
+        try {
+            result = RequestResult.extractFrom(response, streaming);
+        } catch (RuntimeException e) {
+            response.close();
+            throw e;
+        }
+        CallTrace.end(CallTrace.Phase.NETWORK, start);
+        return result;
+    }
+
+    private Object jsonEntity( Object data ) {
+        if (data instanceof InputStream || data instanceof StreamingOutput) return data;
+        return new StreamingJsonEntity( data );
+    }
+
     private String pathOrAbsolute( String path ) {
-        if (pattern.matcher(path).matches()) {
+        if (path.startsWith("http://") || path.startsWith("https://")) {
             return path;
         }
         return baseUri + "/" + path;
@@ -113,59 +227,101 @@ public class ExecutingRestRequest implements RestRequest {
  
     @Override
     public RequestResult get( String path ) {
-        return RequestResult.extractFrom(builder(path).get(ClientResponse.class));
+        final long start = CallTrace.start();
+        return extract(builder(path).get(ClientResponse.class), start);
     }
 
  
     @Override
     public RequestResult get( String path, Object data ) {
+        final long start = CallTrace.start();
         Builder builder = builder(path);
         if ( data != null ) {
-            builder = builder.entity( JsonHelper.createJsonFrom( data ), APPLICATION_JSON_TYPE );
+            builder = builder.entity( jsonEntity( data ), APPLICATION_JSON_TYPE );
         }
-        return RequestResult.extractFrom(builder.get(ClientResponse.class));
+        return extract(builder.get(ClientResponse.class), start);
+    }
+
+    @Override
+    public RequestResult getIfNoneMatch( String path, String eTag ) {
+        final long start = CallTrace.start();
+        Builder builder = builder(path);
+        if ( eTag != null ) {
+            builder = builder.header( HttpHeaders.IF_NONE_MATCH, eTag );
+        }
+        return extract(builder.get(ClientResponse.class), start);
     }
 
   
     @Override
     public RequestResult delete(String path) {
-        return RequestResult.extractFrom(builder(path).delete(ClientResponse.class));
+        final long start = CallTrace.start();
+        return extract(builder(path).delete(ClientResponse.class), start);
     }
 
 
     @Override
     public RequestResult post( String path, Object data ) {
+        final long start = CallTrace.start();
         Builder builder = builder( path );
         if ( data != null ) {
-            Object payload = data instanceof InputStream ? data : JsonHelper.createJsonFrom(data);
-            builder = builder.entity( payload , APPLICATION_JSON_TYPE );
+            builder = builder.entity( jsonEntity( data ), APPLICATION_JSON_TYPE );
         }
-        return RequestResult.extractFrom(builder.post(ClientResponse.class));
+        return extract(builder.post(ClientResponse.class), start);
     }
 
     @Override
     public RequestResult put( String path, Object data ) {
+        final long start = CallTrace.start();
         Builder builder = builder( path );
         if ( data != null ) {
-            builder = builder.entity( JsonHelper.createJsonFrom( data ), APPLICATION_JSON_TYPE );
+            builder = builder.entity( jsonEntity( data ), APPLICATION_JSON_TYPE );
         }
-        return RequestResult.extractFrom(builder.put(ClientResponse.class));
+        return extract(builder.put(ClientResponse.class), start);
     }
 
     @Override
     public RestRequest with( String uri ) {
-        return new ExecutingRestRequest(uri, client);
+        return new ExecutingRestRequest(uri, client, connectionPool, router, hedging, limiter, metrics, streaming, resources, config);
     }
 
-    private URI uri( String uri ) {
-        try {
-            return new URI( uri );
-        } catch ( URISyntaxException e ) {
-            throw new RuntimeException( e );
-        }
+ 
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * @return the router of a cluster client or null if all requests go to the base uri
+     */
+    public ClusterRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * @return the hedging statistics or null if hedging is not enabled
+     */
+    public HedgingFilter getHedging() {
+        return hedging;
+    }
+
+    /**
+     * @return the adaptive concurrency limit or null if it is not enabled
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the request metrics or null if they are not enabled
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RestConfig getConfig() {
+        return config;
     }
 
- 
     @Override
     public String getUri() {
         return baseUri;
@@ -178,5 +334,14 @@ public class ExecutingRestRequest implements RestRequest {
 
     public void close() {
         client.destroy();
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        if (hedging != null) {
+            hedging.close();
+        }
+        if (metrics != null) {
+            metrics.unregister();
+        }
     }
 }
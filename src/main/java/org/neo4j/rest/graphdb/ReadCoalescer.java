@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.neo4j.graphdb.NotFoundException;
+
+/**
+ * Coalesces single node and relationship reads of concurrent threads. The ids requested within the window are
+ * deduplicated and loaded with one batch request, each waiting thread gets the data of its id. If one of the ids
+ * does not exist the whole batch fails, then every thread of the group falls back to loading its id on its own.
+ */
+public class ReadCoalescer {
+    private static final Pattern ENTITY_URI = Pattern.compile("/(node|relationship)/(\\d+)$");
+
+    private final ExecutingRestAPI restAPI;
+    private final long windowNanos;
+    private final int maxIds;
+    private final Group[] current = new Group[2];
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong fetches = new AtomicLong();
+
+    public ReadCoalescer(ExecutingRestAPI restAPI, long windowMillis, int maxIds) {
+        if (maxIds < 1) throw new IllegalArgumentException("Coalesced ids must be positive, got " + maxIds);
+        this.restAPI = restAPI;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * @return the data of the node or relationship, or null if the caller has to load it itself
+     */
+    public Map<?, ?> get(String type, long id) {
+        final int slot = type.equals("node") ? 0 : 1;
+        final Group group;
+        final boolean leader;
+        synchronized (this) {
+            leader = current[slot] == null;
+            if (leader) current[slot] = new Group(type);
+            group = current[slot];
+            group.ids.add(id);
+            if (group.ids.size() >= maxIds) {
+                current[slot] = null;
+                group.full.countDown();
+            }
+        }
+        reads.incrementAndGet();
+        if (leader) {
+            group.awaitFull(windowNanos);
+            synchronized (this) {
+                if (current[slot] == group) current[slot] = null;
+            }
+            group.fetch();
+            fetches.incrementAndGet();
+        } else {
+            group.awaitDone();
+        }
+        return group.result(id);
+    }
+
+    /**
+     * @return the data of the entity, or null if the uri does not denote a node or relationship or the caller has
+     * to load it itself
+     */
+    public Map<?, ?> get(String uri) {
+        final Matcher matcher = ENTITY_URI.matcher(uri);
+        if (!matcher.find()) return null;
+        return get(matcher.group(1), Long.parseLong(matcher.group(2)));
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getFetches() {
+        return fetches.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReadCoalescer[reads=%d, fetches=%d]", getReads(), getFetches());
+    }
+
+    private class Group {
+        private final String type;
+        private final Set<Long> ids = new LinkedHashSet<Long>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Map<Long, Map<?, ?>> loaded;
+        private volatile RuntimeException failure;
+
+        Group(String type) {
+            this.type = type;
+        }
+
+        void awaitFull(long nanos) {
+            try {
+                full.await(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void fetch() {
+            try {
+                final List<Long> ids;
+                synchronized (ReadCoalescer.this) {
+                    ids = new ArrayList<Long>(this.ids);
+                }
+                final List<Map<?, ?>> data = restAPI.fetchByIds(type, ids);
+                final Map<Long, Map<?, ?>> byId = new HashMap<Long, Map<?, ?>>(ids.size() * 2);
+                for (int i = 0; i < ids.size(); i++) {
+                    byId.put(ids.get(i), data.get(i));
+                }
+                loaded = byId;
+            } catch (NotFoundException e) {
+                // left to the single reads, they report which id is missing
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        Map<?, ?> result(long id) {
+            if (failure != null) throw failure;
+            final Map<Long, Map<?, ?>> loaded = this.loaded;
+            return loaded == null ? null : loaded.get(id);
+        }
+    }
+}
@@ -19,15 +19,18 @@
  */
 package org.neo4j.rest.graphdb;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Map;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.StatusType;
 
 import org.neo4j.rest.graphdb.batch.RestOperations.RestOperation;
+import org.neo4j.rest.graphdb.util.CallTrace;
 import org.neo4j.rest.graphdb.util.JsonHelper;
 
 import com.sun.jersey.api.client.ClientResponse;
@@ -38,7 +41,7 @@ import org.neo4j.rest.graphdb.util.StreamJsonHelper;
 * @author Klemens Burchardi
 * @since 03.08.11
 */
-public class RequestResult {
+public class RequestResult implements Closeable {
     private final int status;
     private final String location;
     private ClientResponse response;
@@ -47,6 +50,8 @@ public class RequestResult {
     private InputStream stream;
     private long batchId;
     private boolean batchResult = false;
+    private boolean parsed;
+    private String eTag;
 
     
     RequestResult(int status, String location, String string) {
@@ -75,20 +80,29 @@ public class RequestResult {
     }
 
     public static RequestResult extractFrom(ClientResponse clientResponse) {
+        return extractFrom(clientResponse, false);
+    }
+
+    /**
+     * @param streaming if true the entity stream of the response is kept open and only parsed when the result
+     * is consumed, the connection is released when the stream was read or the result is closed
+     */
+    public static RequestResult extractFrom(ClientResponse clientResponse, boolean streaming) {
         final int status = clientResponse.getStatus();
         final URI location = clientResponse.getLocation();
-        // final InputStream data;
-        if (status == Response.Status.NO_CONTENT.getStatusCode()) {
-        //    data = null;
+        final String eTag = clientResponse.getHeaders().getFirst(HttpHeaders.ETAG);
+        RequestResult result;
+        if (status == Response.Status.NO_CONTENT.getStatusCode() || status == Response.Status.NOT_MODIFIED.getStatusCode()) {
             clientResponse.close();
-            return new RequestResult(status, uriString(location), null,clientResponse);
+            result = new RequestResult(status, uriString(location), null,clientResponse);
+        } else if (streaming) {
+            result = new RequestResult(status, uriString(location), clientResponse.getEntityInputStream(), clientResponse);
         } else {
-        //    data = clientResponse.getEntityInputStream();
-            RequestResult result = new RequestResult(status, uriString(location), clientResponse.getEntity(String.class));
+            result = new RequestResult(status, uriString(location), clientResponse.getEntity(String.class));
             clientResponse.close();
-            return result;
         }
-        //return new RequestResult(status, uriString(location), data,clientResponse);
+        result.eTag = eTag;
+        return result;
     }
 
     private static String uriString(URI location) {
@@ -105,14 +119,20 @@ public class RequestResult {
     }
 
     public Object toEntity() {
-        if (entity!=null) return entity;
+        if (entity!=null || parsed) return entity;
+        final long start = CallTrace.start();
         if (stream != null) {
-            entity = StreamJsonHelper.jsonToSingleValue(stream);
-            closeStream();
+            try {
+                entity = StreamJsonHelper.jsonToSingleValue(CallTrace.countIn(stream));
+            } finally {
+                closeStream();
+            }
         }
         else {
+            if (string != null) CallTrace.countIn(string.length());
             entity = JsonHelper.jsonToSingleValue(string);
         }
+        CallTrace.end(CallTrace.Phase.PARSE, start);
         return entity;
     }
 
@@ -123,6 +143,17 @@ public class RequestResult {
         return (Map<?, ?>) toEntity();
     }
 
+    /**
+     * @return the entity tag sent by the server or null if it didn't send one
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public boolean isNotModified() {
+        return statusIs(Response.Status.NOT_MODIFIED);
+    }
+
     public boolean statusIs( StatusType status ) {
         return getStatus() == status.getStatusCode();
     }
@@ -140,19 +171,51 @@ public class RequestResult {
     }
 
     public static RequestResult extractFrom(Map<String, Object> batchResult) {
-        return new RequestResult(200, (String) batchResult.get("location"),JsonHelper.createJsonFrom(batchResult.get("body")));
+        return fromBody((String) batchResult.get("location"), batchResult.get("body"));
+    }
+
+    /**
+     * @param body the already parsed body of a sub-result of a batch, used as the entity as it is
+     */
+    public static RequestResult fromBody(String location, Object body) {
+        final RequestResult result = new RequestResult(200, location, null);
+        result.entity = body;
+        result.parsed = true;
+        return result;
     }
 
     public String getText() {
+        if (string==null && parsed) {
+            string = JsonHelper.createJsonFrom(entity);
+        }
         if (string==null && stream!=null) {
-            string = JsonHelper.readString(stream);
-            closeStream();
+            try {
+                string = JsonHelper.readString(stream);
+            } finally {
+                closeStream();
+            }
         }
         return string;
     }
 
-    private void closeStream() {
-        if (stream!=null) readFully(stream);
+    /**
+     * the still unread response stream for incremental parsing, callers have to {@link #close()} the result
+     * when they are done with it
+     */
+    public InputStream getStream() {
+        return stream;
+    }
+
+    public boolean isStreaming() {
+        return stream != null;
+    }
+
+    /**
+     * releases the underlying connection without reading the remaining response, results that were
+     * already consumed via {@link #toEntity()} or {@link #getText()} are not affected
+     */
+    @Override
+    public void close() {
         stream = null;
         if (response!=null) {
             response.close();
@@ -160,6 +223,14 @@ public class RequestResult {
         }
     }
 
+    private void closeStream() {
+        try {
+            if (stream!=null) readFully(stream);
+        } finally {
+            close();
+        }
+    }
+
     private void readFully(InputStream stream) {
         try {
             while (stream.read()!=-1);
@@ -24,6 +24,7 @@ import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.rest.graphdb.batch.BatchCallback;
 import org.neo4j.rest.graphdb.converter.RestEntityExtractor;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicy;
 import org.neo4j.rest.graphdb.entity.RestEntity;
 import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.entity.RestRelationship;
@@ -35,6 +36,8 @@ import org.neo4j.rest.graphdb.traversal.RestTraverser;
 import org.neo4j.rest.graphdb.util.QueryResult;
 import org.neo4j.rest.graphdb.util.ResultConverter;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,6 +52,20 @@ public interface RestAPI {
 
     RestRelationship getRelationshipById(long id);
 
+    /**
+     * loads the nodes in chunks of {@link org.neo4j.rest.graphdb.util.Config#FETCH_CHUNK_SIZE} ids per request
+     * @return the nodes in the order of the given ids
+     * @throws NotFoundException naming the first missing node, if one of the nodes doesn't exist none are returned
+     */
+    List<RestNode> getNodesByIds(Collection<Long> ids);
+
+    /**
+     * loads the relationships in chunks of {@link org.neo4j.rest.graphdb.util.Config#FETCH_CHUNK_SIZE} ids per request
+     * @return the relationships in the order of the given ids
+     * @throws NotFoundException naming the first missing relationship, if one of them doesn't exist none are returned
+     */
+    List<RestRelationship> getRelationshipsByIds(Collection<Long> ids);
+
     RestNode createNode(Map<String, Object> props);
 
     RestNode createRestNode(RequestResult requestResult);
@@ -78,6 +95,10 @@ public interface RestAPI {
 
     void setPropertyOnEntity(RestEntity entity, String key, Object value);
 
+    /**
+     * @return the properties of the entity or null if the refresh policy is conditional and the properties
+     * were not modified since they were last fetched
+     */
     @SuppressWarnings("unchecked")
     Map<String, Object> getPropertiesFromEntity(RestEntity entity);
 
@@ -98,6 +119,8 @@ public interface RestAPI {
 
     boolean hasToUpdate(long lastUpdate);
 
+    PropertyRefreshPolicy getPropertyRefreshPolicy();
+
     void removeProperty(RestEntity entity, String key);
 
     Map<?, ?> query(String statement, Map<String, Object> params);
@@ -22,10 +22,15 @@ package org.neo4j.rest.graphdb;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.rest.graphdb.batch.AsyncCommitter;
 import org.neo4j.rest.graphdb.batch.BatchCallback;
 import org.neo4j.rest.graphdb.batch.BatchRestAPI;
+import org.neo4j.rest.graphdb.batch.GroupCommitter;
+import org.neo4j.rest.graphdb.batch.ParallelBatchExecutor;
 import org.neo4j.rest.graphdb.converter.RestEntityExtractor;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicy;
 import org.neo4j.rest.graphdb.entity.RestEntity;
+import org.neo4j.rest.graphdb.entity.RestEntityCache;
 import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.entity.RestRelationship;
 import org.neo4j.rest.graphdb.index.IndexInfo;
@@ -33,11 +38,16 @@ import org.neo4j.rest.graphdb.index.RestIndex;
 import org.neo4j.rest.graphdb.index.RestIndexManager;
 import org.neo4j.rest.graphdb.services.RequestType;
 import org.neo4j.rest.graphdb.transaction.NullTransaction;
+import org.neo4j.rest.graphdb.transport.ClusterRouter;
+import org.neo4j.rest.graphdb.transport.RequestMetrics;
 import org.neo4j.rest.graphdb.traversal.RestTraverser;
 import org.neo4j.rest.graphdb.util.Config;
 import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.RestConfig;
 import org.neo4j.rest.graphdb.util.ResultConverter;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -63,7 +73,24 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public RestNode createNode(Map<String, Object> props) {
+    public List<RestNode> getNodesByIds(Collection<Long> ids) {
+        return direct.getNodesByIds(ids);
+    }
+
+    @Override
+    public List<RestRelationship> getRelationshipsByIds(Collection<Long> ids) {
+        return direct.getRelationshipsByIds(ids);
+    }
+
+    @Override
+    public RestNode createNode(final Map<String, Object> props) {
+        if (isGroupCommit()) {
+            return groupCommitter.execute(new BatchCallback<RestNode>() {
+                public RestNode recordBatch(RestAPI batchRestApi) {
+                    return batchRestApi.createNode(props);
+                }
+            });
+        }
         return current().createNode(props);
     }
 
@@ -73,15 +100,81 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public RestRelationship createRelationship(Node startNode, Node endNode, RelationshipType type, Map<String, Object> props) {
+    public RestRelationship createRelationship(final Node startNode, final Node endNode, final RelationshipType type, final Map<String, Object> props) {
+        if (isWriteBehind()) {
+            // executed directly, but after the queued writes of its nodes
+            writeBehind.flush(startNode);
+            writeBehind.flush(endNode);
+        }
+        if (isGroupCommit()) {
+            return groupCommitter.execute(new BatchCallback<RestRelationship>() {
+                public RestRelationship recordBatch(RestAPI batchRestApi) {
+                    return batchRestApi.createRelationship(startNode, endNode, type, props);
+                }
+            });
+        }
         return current().createRelationship(startNode, endNode, type, props);
     }
 
+    /**
+     * single writes outside of a transaction are grouped with the writes of other threads
+     */
+    private boolean isGroupCommit() {
+        return groupCommitter != null && currentTransaction() == null;
+    }
+
+    /**
+     * single writes outside of a transaction are queued for the background writers, which execute them directly
+     */
+    private boolean isWriteBehind() {
+        return writeBehind != null && !writeBehind.isWriter() && currentTransaction() == null;
+    }
+
+    /**
+     * drops the local state of an entity before its write is queued, the next read fetches it after the write
+     */
+    private void invalidateQueued(RestEntity entity) {
+        entity.invalidatePropertyData();
+        final RestEntityCache cache = direct.getEntityCache();
+        if (cache != null) cache.invalidate(entity.getUri());
+    }
+
+    /**
+     * waits for the queued writes of the entity before it is read
+     */
+    private void awaitQueued(RestEntity entity) {
+        if (writeBehind != null) writeBehind.flush(entity);
+    }
+
     private RestAPI current() {
-        final BatchRestAPI batchRestAPI = BatchTransaction.getRestApi();
+        final BatchRestAPI batchRestAPI = currentBatchRestAPI();
         return batchRestAPI == null ? direct : batchRestAPI;
     }
 
+    BatchTransaction currentTransaction() {
+        final BatchTransaction transaction = transactions.get();
+        if (transaction != null && transaction.isFinished()) {
+            transactions.remove();
+            return null;
+        }
+        return transaction;
+    }
+
+    BatchRestAPI currentBatchRestAPI() {
+        final BatchTransaction transaction = currentTransaction();
+        return transaction == null ? null : transaction.getBatchRestAPI();
+    }
+
+    void bindTransaction(BatchTransaction transaction) {
+        final BatchTransaction current = currentTransaction();
+        if (current != null && current != transaction) throw new IllegalStateException("Transaction already in progress!");
+        transactions.set(transaction);
+    }
+
+    void unbindTransaction(BatchTransaction transaction) {
+        if (transactions.get() == transaction) transactions.remove();
+    }
+
     @Override
     public RestRelationship createRestRelationship(RequestResult requestResult, PropertyContainer element) {
         return current().createRestRelationship(requestResult, element);
@@ -109,7 +202,7 @@ public class RestAPIFacade implements RestAPI {
 
     @Override
     public Transaction beginTx() {
-        if (Config.useBatchTransactions())
+        if (config.useBatchTransactions())
             return BatchTransaction.begin(this);
         return new NullTransaction();
     }
@@ -121,7 +214,16 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public void deleteEntity(RestEntity entity) {
+    public void deleteEntity(final RestEntity entity) {
+        if (isWriteBehind()) {
+            invalidateQueued(entity);
+            writeBehind.submit(entity, new Runnable() {
+                public void run() {
+                    deleteEntity(entity);
+                }
+            });
+            return;
+        }
         current().deleteEntity(entity);
     }
 
@@ -131,13 +233,32 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public void setPropertyOnEntity(RestEntity entity, String key, Object value) {
+    public void setPropertyOnEntity(final RestEntity entity, final String key, final Object value) {
+        if (isWriteBehind()) {
+            invalidateQueued(entity);
+            writeBehind.submit(entity, new Runnable() {
+                public void run() {
+                    setPropertyOnEntity(entity, key, value);
+                }
+            });
+            return;
+        }
+        if (isGroupCommit()) {
+            groupCommitter.execute(new BatchCallback<Void>() {
+                public Void recordBatch(RestAPI batchRestApi) {
+                    batchRestApi.setPropertyOnEntity(entity, key, value);
+                    return null;
+                }
+            });
+            return;
+        }
         current().setPropertyOnEntity(entity, key, value);
     }
 
     @Override
 
     public Map<String, Object> getPropertiesFromEntity(RestEntity entity) {
+        awaitQueued(entity);
         return current().getPropertiesFromEntity(entity);
     }
 
@@ -162,7 +283,24 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public <T extends PropertyContainer> void addToIndex(T entity, RestIndex index, String key, Object value) {
+    public <T extends PropertyContainer> void addToIndex(final T entity, final RestIndex index, final String key, final Object value) {
+        if (isWriteBehind()) {
+            writeBehind.submit(entity, new Runnable() {
+                public void run() {
+                    addToIndex(entity, index, key, value);
+                }
+            });
+            return;
+        }
+        if (isGroupCommit()) {
+            groupCommitter.execute(new BatchCallback<Void>() {
+                public Void recordBatch(RestAPI batchRestApi) {
+                    batchRestApi.addToIndex(entity, index, key, value);
+                    return null;
+                }
+            });
+            return;
+        }
         current().addToIndex(entity, index, key, value);
     }
 
@@ -174,6 +312,7 @@ public class RestAPIFacade implements RestAPI {
 
     @Override
     public Map<?, ?> getData(RestEntity uri) {
+        awaitQueued(uri);
         return current().getData(uri);
     }
 
@@ -183,7 +322,36 @@ public class RestAPIFacade implements RestAPI {
     }
 
     @Override
-    public void removeProperty(RestEntity entity, String key) {
+    public PropertyRefreshPolicy getPropertyRefreshPolicy() {
+        return current().getPropertyRefreshPolicy();
+    }
+
+    /**
+     * sets how properties of already loaded entities are refreshed, defaults to a time to live of one second
+     * @see org.neo4j.rest.graphdb.entity.PropertyRefreshPolicies
+     */
+    public void setPropertyRefreshPolicy(PropertyRefreshPolicy propertyRefreshPolicy) {
+        getDirect().setPropertyRefreshPolicy(propertyRefreshPolicy);
+    }
+
+    /**
+     * sets how many ids {@link #getNodesByIds} and {@link #getRelationshipsByIds} load with one batch request
+     */
+    public void setFetchChunkSize(int fetchChunkSize) {
+        getDirect().setFetchChunkSize(fetchChunkSize);
+    }
+
+    @Override
+    public void removeProperty(final RestEntity entity, final String key) {
+        if (isWriteBehind()) {
+            invalidateQueued(entity);
+            writeBehind.submit(entity, new Runnable() {
+                public void run() {
+                    removeProperty(entity, key);
+                }
+            });
+            return;
+        }
         current().removeProperty(entity, key);
     }
 
@@ -254,9 +422,27 @@ public class RestAPIFacade implements RestAPI {
         return current().execute(requestType, uri, params);
     }
 
+    /**
+     * waits until the writes queued for the background writers were executed, a no-op without write-behind
+     * @throws RuntimeException the first queued write that failed since the last flush
+     */
+    public void flush() {
+        if (writeBehind != null) writeBehind.flush();
+        if (asyncCommitter != null) asyncCommitter.flush();
+    }
+
     public void close() {
-        BatchTransaction.shutdown();
-        direct.close();
+        transactions.remove();
+        try {
+            if (writeBehind != null) writeBehind.close();
+        } finally {
+            try {
+                if (asyncCommitter != null) asyncCommitter.close();
+            } finally {
+                if (parallelBatchExecutor != null) parallelBatchExecutor.close();
+                direct.close();
+            }
+        }
     }
 
     @Override
@@ -284,32 +470,154 @@ public class RestAPIFacade implements RestAPI {
         current().stopAutoIndexingProperty(forClass, s);
     }
 
+    private final RestConfig config;
     private final ExecutingRestAPI direct;
+    private final GroupCommitter groupCommitter;
+    private final WriteBehind writeBehind;
+    private final AsyncCommitter asyncCommitter;
+    private final ParallelBatchExecutor parallelBatchExecutor;
+    private final ThreadLocal<BatchTransaction> transactions = new ThreadLocal<BatchTransaction>();
 
     private RestAPIFacade(ExecutingRestAPI direct) {
+        this.config = direct.getConfig();
         this.direct = direct;
+        this.groupCommitter = createGroupCommitter();
+        this.writeBehind = createWriteBehind();
+        this.asyncCommitter = createAsyncCommitter();
+        this.parallelBatchExecutor = createParallelBatchExecutor();
     }
 
     public RestAPIFacade(String uri) {
-        this.direct = new ExecutingRestAPI(uri, this);
+        this(uri, null, null);
     }
 
     public RestAPIFacade(String uri, String user, String password) {
-        this.direct = new ExecutingRestAPI(uri, user, password, this);
+        this(uri, user, password, RestConfig.fromSystemProperties());
+    }
+
+    /**
+     * @param config the settings of this facade, resolved once instead of reading the system properties
+     */
+    public RestAPIFacade(String uri, String user, String password, RestConfig config) {
+        this.config = config;
+        this.direct = new ExecutingRestAPI(uri, user, password, this, config);
+        this.groupCommitter = createGroupCommitter();
+        this.writeBehind = createWriteBehind();
+        this.asyncCommitter = createAsyncCommitter();
+        this.parallelBatchExecutor = createParallelBatchExecutor();
+    }
+
+    /**
+     * client for the members of an HA cluster, writes go to the master, reads are spread across all healthy members
+     * @param masterUri the member taking the writes or null to ask the members for their HA role
+     */
+    public RestAPIFacade(Collection<String> memberUris, String masterUri, String user, String password) {
+        this(memberUris, masterUri, user, password, RestConfig.fromSystemProperties());
+    }
+
+    public RestAPIFacade(Collection<String> memberUris, String masterUri, String user, String password, RestConfig config) {
+        this.config = config;
+        this.direct = new ExecutingRestAPI(new ClusterRouter(memberUris, masterUri, config.getClusterMaxFailures(), config.getClusterEjectTimeout()), user, password, this, config);
+        this.groupCommitter = createGroupCommitter();
+        this.writeBehind = createWriteBehind();
+        this.asyncCommitter = createAsyncCommitter();
+        this.parallelBatchExecutor = createParallelBatchExecutor();
+    }
+
+    private GroupCommitter createGroupCommitter() {
+        return config.useGroupCommit() ? new GroupCommitter(this, config.getGroupCommitLinger(), config.getGroupCommitSize()) : null;
+    }
+
+    private ParallelBatchExecutor createParallelBatchExecutor() {
+        return config.getBatchParallelism() > 1 ? new ParallelBatchExecutor(config.getBatchParallelism()) : null;
+    }
+
+    private AsyncCommitter createAsyncCommitter() {
+        return config.getAsyncCommitBatches() > 0 ? new AsyncCommitter(config.getAsyncCommitBatches(), config.getBatchSpillThreshold()) : null;
+    }
+
+    private WriteBehind createWriteBehind() {
+        return config.useWriteBehind() ? new WriteBehind(config.getWriteThreads(), config.getWriteBehindQueueSize()) : null;
+    }
+
+    public RestConfig getConfig() {
+        return config;
     }
 
     public ExecutingRestAPI getDirect() {
         return direct;
     }
 
+    /**
+     * @return the cache shared by all entities of this facade, null unless enabled with {@link Config#CACHE_SIZE}
+     */
+    public RestEntityCache getEntityCache() {
+        return direct.getEntityCache();
+    }
+
+    /**
+     * @return the coalescer of concurrent single reads, null unless enabled with {@link Config#READ_COALESCE_WINDOW}
+     */
+    public ReadCoalescer getReadCoalescer() {
+        return direct.getReadCoalescer();
+    }
+
+    /**
+     * @return the router of a cluster facade or null if it talks to a single server
+     */
+    public ClusterRouter getClusterRouter() {
+        return direct.getClusterRouter();
+    }
+
+    /**
+     * @return the per operation request metrics, null unless enabled with {@link Config#METRICS}
+     */
+    public RequestMetrics getRequestMetrics() {
+        return direct.getRequestMetrics();
+    }
+
+    /**
+     * @return the group commit statistics, null unless enabled with {@link Config#GROUP_COMMIT}
+     */
+    public GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+
+    /**
+     * @return the background writers, null unless enabled with {@link Config#WRITE_BEHIND}
+     */
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * @return the background committer of batch transactions, null unless enabled with {@link Config#ASYNC_COMMIT_BATCHES}
+     */
+    public AsyncCommitter getAsyncCommitter() {
+        return asyncCommitter;
+    }
+
+    /**
+     * @return the executor splitting batches into concurrent sub-batches, null unless enabled with {@link Config#BATCH_PARALLELISM}
+     */
+    public ParallelBatchExecutor getParallelBatchExecutor() {
+        return parallelBatchExecutor;
+    }
+
+    /**
+     * records the callback into a batch and executes it, the result is updated before this returns even if
+     * batches are committed asynchronously
+     */
     public <T> T executeBatch(BatchCallback<T> batchCallback) {
         final BatchTransaction transaction = BatchTransaction.begin(this);
+        T batchResult;
         try {
-            T batchResult = batchCallback.recordBatch(this);
+            batchResult = batchCallback.recordBatch(this);
             transaction.success();
-            return batchResult;
         } finally {
             transaction.finish();
         }
+        transaction.await();
+        return batchResult;
     }
 }
@@ -21,11 +21,16 @@ package org.neo4j.rest.graphdb;
 
 
 import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.ClosableIterable;
 import org.neo4j.rest.graphdb.index.RestIndexManager;
 import org.neo4j.rest.graphdb.query.RestCypherQueryEngine;
+import org.neo4j.rest.graphdb.query.RestQueryResult;
+import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.RestConfig;
 import org.neo4j.rest.graphdb.util.ResultConverter;
 
 import javax.transaction.TransactionManager;
+import java.util.Iterator;
 import java.util.Map;
 
 
@@ -47,6 +52,10 @@ public class RestGraphDatabase extends AbstractRemoteDatabase {
         this(new RestAPIFacade( uri, user, password ));
     }
 
+    public RestGraphDatabase( String uri, String user, String password, RestConfig config ) {
+        this(new RestAPIFacade( uri, user, password, config ));
+    }
+
     public RestAPI getRestAPI(){
     	return this.restAPI;
     }
@@ -67,9 +76,25 @@ public class RestGraphDatabase extends AbstractRemoteDatabase {
         return this.restAPI.getReferenceNode();
     }
 
+    /**
+     * with stream_query_results the nodes are read while they are iterated, callers that stop iterating early
+     * have to close the result to release the connection
+     */
     @Override
-    public Iterable<Node> getAllNodes() {
-        return cypherQueryEngine.query("start n=node(*) return n", null).to(Node.class);
+    public ClosableIterable<Node> getAllNodes() {
+        final QueryResult<Map<String, Object>> result = cypherQueryEngine.query("start n=node(*) return n", null);
+        final Iterable<Node> nodes = result.to(Node.class);
+        return new ClosableIterable<Node>() {
+            @Override
+            public Iterator<Node> iterator() {
+                return nodes.iterator();
+            }
+
+            @Override
+            public void close() {
+                if (result instanceof RestQueryResult) ((RestQueryResult) result).close();
+            }
+        };
     }
 
     @Override
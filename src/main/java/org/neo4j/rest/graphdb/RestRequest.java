@@ -27,6 +27,11 @@ public interface RestRequest {
 
     RequestResult get(String path, Object data);
 
+    /**
+     * conditional GET, the result has status 304 (not modified) if the resource still matches the given entity tag
+     */
+    RequestResult getIfNoneMatch(String path, String eTag);
+
     RequestResult delete(String path);
 
     RequestResult post(String path, Object data);
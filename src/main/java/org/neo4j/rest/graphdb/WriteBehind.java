@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.neo4j.rest.graphdb.entity.RestEntity;
+
+/**
+ * Executes single writes on a fixed number of background writer threads so the calling thread does not wait for
+ * the server. Each entity is assigned to one writer by its uri, so the writes to one entity are executed in the
+ * order they were queued. A full queue blocks the caller until the writer caught up. Reads of an entity wait for
+ * the queued writes of its writer with {@link #flush(Object)}, so a thread reads its own writes. Failures are not
+ * reported to the thread that queued the write, the first one is rethrown by the next {@link #flush()}.
+ */
+public class WriteBehind {
+    private final Lane[] lanes;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    private volatile boolean closed;
+
+    public WriteBehind(int threads, int queueSize) {
+        if (threads < 1) throw new IllegalArgumentException("Write threads must be positive, got " + threads);
+        if (queueSize < threads) throw new IllegalArgumentException("Write-behind queue size must be at least the number of write threads, got " + queueSize);
+        this.lanes = new Lane[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new Lane(i, queueSize / threads);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * queues the write behind all earlier writes to the same entity, blocks while the queue of its writer is full
+     */
+    public void submit(Object entity, final Runnable write) {
+        enqueue(laneOf(entity), new FutureTask<Void>(new Runnable() {
+            public void run() {
+                try {
+                    write.run();
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }, null));
+        writes.incrementAndGet();
+    }
+
+    /**
+     * waits until the writes queued so far for the writer of the entity were executed, returns right away if it has
+     * none, failures are left for {@link #flush()}
+     */
+    public void flush(Object entity) {
+        if (isWriter()) return;
+        final Lane lane = laneOf(entity);
+        if (lane.pending.get() == 0) return;
+        await(enqueue(lane, barrier()));
+    }
+
+    /**
+     * @return true if the current thread is one of the writers, its writes have to be executed directly
+     */
+    public boolean isWriter() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Lane && ((Lane) thread).owner() == this;
+    }
+
+    /**
+     * waits until all writes queued so far were executed
+     * @throws RuntimeException the first write that failed since the last flush
+     */
+    public void flush() {
+        final FutureTask<?>[] barriers = new FutureTask<?>[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            barriers[i] = enqueue(lanes[i], barrier());
+        }
+        for (FutureTask<?> barrier : barriers) {
+            await(barrier);
+        }
+        final RuntimeException e = failure.getAndSet(null);
+        if (e != null) throw e;
+    }
+
+    /**
+     * executes the queued writes and stops the writers
+     */
+    public void close() {
+        if (closed) return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            for (Lane lane : lanes) {
+                lane.interrupt();
+            }
+        }
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public int getQueued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WriteBehind[writes=%d, failures=%d, queued=%d]", getWrites(), getFailures(), getQueued());
+    }
+
+    private Lane laneOf(Object entity) {
+        final Object key = entity instanceof RestEntity ? ((RestEntity) entity).getUri() : entity;
+        final int hash = key == null ? 0 : key.hashCode();
+        return lanes[(hash & 0x7fffffff) % lanes.length];
+    }
+
+    private <T> FutureTask<T> enqueue(Lane lane, FutureTask<T> task) {
+        if (closed) throw new IllegalStateException("Write-behind is closed");
+        lane.pending.incrementAndGet();
+        try {
+            lane.queue.put(task);
+            return task;
+        } catch (InterruptedException e) {
+            lane.pending.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind queue", e);
+        }
+    }
+
+    private static FutureTask<Void> barrier() {
+        return new FutureTask<Void>(new Runnable() {
+            public void run() {
+            }
+        }, null);
+    }
+
+    private static <T> T await(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind queue", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private class Lane extends Thread {
+        private final BlockingQueue<FutureTask<?>> queue;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Lane(int index, int capacity) {
+            super("neo4j-rest-writer-" + index);
+            this.queue = new ArrayBlockingQueue<FutureTask<?>>(capacity);
+            setDaemon(true);
+        }
+
+        WriteBehind owner() {
+            return WriteBehind.this;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed || !queue.isEmpty()) {
+                    queue.take().run();
+                    pending.decrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                // closed, everything queued before close was flushed
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes the batches of finished transactions in the background, so the producer can record the next batch
+ * while the previous ones run on the server. At most the configured number of batches are in flight, further
+ * commits block until one of them completed. All batches share one id sequence, so a batch can use entities
+ * created by a batch still in flight: it waits for that batch and sends the locations of those entities instead
+ * of their placeholders. A failure is reported by {@link Batch#await()} of its batch or by the next
+ * {@link #flush()}, never by the commit of an unrelated batch, which is already queued when it returns.
+ */
+public class AsyncCommitter {
+    private static final Pattern REFERENCE = Pattern.compile("\\{(\\d+)\\}");
+
+    private final AtomicLong batchIds = new AtomicLong();
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+    // batches in flight and completed ones whose placeholders may still be held by open transactions, guarded by this
+    private final List<Batch> pending = new ArrayList<Batch>();
+    private final SortedSet<Long> open = new TreeSet<Long>();
+    private long opened;
+    private final int spillThreshold;
+
+    public AsyncCommitter(int maxInFlight) {
+        this(maxInFlight, 0);
+    }
+
+    /**
+     * @param spillThreshold operations of a batch kept on heap before older ones are spilled to a file, 0 keeps all
+     */
+    public AsyncCommitter(int maxInFlight, int spillThreshold) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("Batches in flight must be positive, got " + maxInFlight);
+        this.spillThreshold = spillThreshold;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = Executors.newFixedThreadPool(maxInFlight, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "neo4j-rest-committer-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return operations for a new batch, numbered from the sequence shared by all batches of this committer
+     */
+    public RestOperations newOperations() {
+        return new RestOperations(batchIds, spillThreshold);
+    }
+
+    /**
+     * registers a transaction that may record entities of pending batches
+     * @return the handle to pass to {@link #submit} or {@link #discard}
+     */
+    public synchronized long open() {
+        open.add(++opened);
+        return opened;
+    }
+
+    /**
+     * ends a transaction without sending its batch
+     */
+    public synchronized void discard(long transaction) {
+        open.remove(transaction);
+        prune();
+    }
+
+    /**
+     * queues the batch of the transaction, blocks while the maximum number of batches is in flight
+     */
+    public Batch submit(BatchRestAPI batchRestAPI, long transaction) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            discard(transaction);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batches in flight", e);
+        }
+        final Batch batch;
+        try {
+            batchRestAPI.stop();
+            final Collection<RestOperations.RestOperation> recorded = batchRestAPI.getRecordedOperations().getRecordedRequests().values();
+            batch = new Batch(batchRestAPI, recorded);
+            synchronized (this) {
+                batch.dependOn(pending);
+                pending.add(batch);
+                open.remove(transaction);
+                prune();
+            }
+            batches.incrementAndGet();
+            operations.addAndGet(recorded.size());
+            executor.execute(batch);
+        } catch (RuntimeException e) {
+            discard(transaction);
+            inFlight.release();
+            throw e;
+        }
+        return batch;
+    }
+
+    /**
+     * waits until all batches submitted so far were executed
+     * @throws RuntimeException the first failure that was not reported yet
+     */
+    public void flush() {
+        final List<Batch> batches;
+        synchronized (this) {
+            batches = new ArrayList<Batch>(pending);
+        }
+        for (Batch batch : batches) {
+            batch.awaitDone();
+        }
+        rethrow();
+    }
+
+    public void close() {
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getOperations() {
+        return operations.get();
+    }
+
+    public int getInFlight() {
+        int count = 0;
+        synchronized (this) {
+            for (Batch batch : pending) {
+                if (!batch.isDone()) count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AsyncCommitter[batches=%d, operations=%d, inFlight=%d]", getBatches(), getOperations(), getInFlight());
+    }
+
+    private void rethrow() {
+        final RuntimeException e = failure.getAndSet(null);
+        if (e != null) throw e;
+    }
+
+    /**
+     * drops completed batches once every transaction that was open before they completed is finished, later
+     * transactions only see the updated entities
+     */
+    private void prune() {
+        final long oldestOpen = open.isEmpty() ? Long.MAX_VALUE : open.first();
+        for (Iterator<Batch> it = pending.iterator(); it.hasNext(); ) {
+            final Batch batch = it.next();
+            if (batch.isDone() && batch.openedBefore < oldestOpen) it.remove();
+        }
+    }
+
+    private synchronized void completed(Batch batch) {
+        batch.openedBefore = opened;
+        prune();
+    }
+
+    public class Batch implements Runnable {
+        private final BatchRestAPI batchRestAPI;
+        private final long minId;
+        private final long maxId;
+        private final Set<Long> references = new HashSet<Long>();
+        private final List<Batch> dependencies = new ArrayList<Batch>();
+        private final Map<Long, String> locations = new HashMap<Long, String>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile RuntimeException batchFailure;
+        private long openedBefore = Long.MAX_VALUE;
+
+        private Batch(BatchRestAPI batchRestAPI, Collection<RestOperations.RestOperation> recorded) {
+            this.batchRestAPI = batchRestAPI;
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (RestOperations.RestOperation operation : recorded) {
+                min = Math.min(min, operation.getBatchId());
+                max = Math.max(max, operation.getBatchId());
+            }
+            this.minId = min;
+            this.maxId = max;
+            for (RestOperations.RestOperation operation : recorded) {
+                collectReferences(operation.getBaseUri());
+                collectReferences(operation.getUri());
+                collectReferences(operation.getData());
+            }
+            for (Iterator<Long> it = references.iterator(); it.hasNext(); ) {
+                final Long reference = it.next();
+                if (reference >= minId && reference <= maxId && batchRestAPI.getRecordedOperations().getOperation(reference) != null) {
+                    it.remove();
+                }
+            }
+        }
+
+        // called with the committer lock held, the ids of earlier batches don't overlap unless they were recorded concurrently
+        private void dependOn(List<Batch> batches) {
+            if (references.isEmpty()) return;
+            for (Batch batch : batches) {
+                if (batch.mayOwn(references)) dependencies.add(batch);
+            }
+        }
+
+        private boolean mayOwn(Set<Long> ids) {
+            for (Long id : ids) {
+                if (id >= minId && id <= maxId) return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void collectReferences(Object value) {
+            if (value instanceof String) {
+                final String text = (String) value;
+                if (text.indexOf('{') == -1) return;
+                final Matcher matcher = REFERENCE.matcher(text);
+                while (matcher.find()) {
+                    references.add(Long.valueOf(matcher.group(1)));
+                }
+            } else if (value instanceof Map) {
+                for (Object element : ((Map<Object, Object>) value).values()) {
+                    collectReferences(element);
+                }
+            } else if (value instanceof Collection) {
+                for (Object element : (Collection<Object>) value) {
+                    collectReferences(element);
+                }
+            }
+        }
+
+        public void run() {
+            try {
+                final Map<Long, String> resolved = new HashMap<Long, String>();
+                for (Batch dependency : dependencies) {
+                    dependency.awaitDone();
+                    for (Long reference : references) {
+                        final String location = dependency.locations.get(reference);
+                        if (location != null) resolved.put(reference, location);
+                    }
+                }
+                for (Batch dependency : dependencies) {
+                    if (dependency.batchFailure != null && !resolved.keySet().containsAll(references)) {
+                        throw new IllegalStateException("Batch uses entities of a failed batch", dependency.batchFailure);
+                    }
+                }
+                locations.putAll(resolved);
+                batchRestAPI.executeBatchRequest(locations);
+                locations.keySet().removeAll(resolved.keySet());
+            } catch (RuntimeException e) {
+                batchFailure = e;
+                failure.compareAndSet(null, e);
+            } finally {
+                dependencies.clear();
+                done.countDown();
+                completed(this);
+                inFlight.release();
+            }
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * waits until this batch was executed
+         * @throws RuntimeException its failure, which is then no longer reported by later commits or flushes
+         */
+        public void await() {
+            awaitDone();
+            final RuntimeException e = batchFailure;
+            if (e == null) return;
+            failure.compareAndSet(e, null);
+            throw e;
+        }
+
+        private void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // the batch is already sent, wait for its outcome
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
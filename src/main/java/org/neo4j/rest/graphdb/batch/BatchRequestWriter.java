@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.StreamJsonHelper;
+
+/**
+ * Writes the recorded operations of one batch chunk directly to the request stream. References to
+ * operations of already executed chunks ({batchId}) are replaced by the locations returned for them,
+ * references within the chunk are left for the server to resolve.
+ */
+public class BatchRequestWriter implements StreamingOutput {
+    private static final Pattern REFERENCE = Pattern.compile("\\{(\\d+)\\}");
+
+    private final Collection<RestOperations.RestOperation> operations;
+    private final String baseUri;
+    private final Map<Long, String> locations;
+
+    public BatchRequestWriter(Collection<RestOperations.RestOperation> operations, String baseUri, Map<Long, String> locations) {
+        this.operations = operations;
+        this.baseUri = baseUri;
+        this.locations = locations;
+    }
+
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        final long start = CallTrace.start();
+        final JsonGenerator generator = StreamJsonHelper.createJsonGenerator(CallTrace.countOut(stream));
+        generator.writeStartArray();
+        for (RestOperations.RestOperation operation : operations) {
+            generator.writeObject(toBatchRequest(operation));
+        }
+        generator.writeEndArray();
+        generator.flush();
+        CallTrace.end(CallTrace.Phase.SERIALIZE, start);
+    }
+
+    public Map<String, Object> toBatchRequest(RestOperations.RestOperation operation) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("method", operation.getMethod());
+        if (operation.isSameUri(baseUri)) {
+            params.put("to", resolve(operation.getUri()));
+        } else {
+            params.put("to", resolve(createOperationUri(operation)));
+        }
+        if (operation.getData() != null) {
+            params.put("body", resolve(operation.getData()));
+        }
+        params.put("id", operation.getBatchId());
+        return params;
+    }
+
+    private String createOperationUri(RestOperations.RestOperation operation) {
+        String uri = operation.getBaseUri();
+        String suffix = operation.getUri();
+        if (suffix.startsWith("/")) {
+            return uri + suffix;
+        }
+        return uri + "/" + suffix;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object resolve(Object value) {
+        if (locations == null || locations.isEmpty()) return value;
+        if (value instanceof String) return resolve((String) value);
+        if (value instanceof Map) {
+            final Map<Object, Object> resolved = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                resolved.put(entry.getKey(), resolve(entry.getValue()));
+            }
+            return resolved;
+        }
+        if (value instanceof Collection) {
+            final List<Object> resolved = new ArrayList<Object>(((Collection) value).size());
+            for (Object element : (Collection) value) {
+                resolved.add(resolve(element));
+            }
+            return resolved;
+        }
+        return value;
+    }
+
+    private String resolve(String value) {
+        if (value.indexOf('{') == -1) return value;
+        final Matcher matcher = REFERENCE.matcher(value);
+        final StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            final String location = locations.get(Long.valueOf(matcher.group(1)));
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(location != null ? location : matcher.group()));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * rough size of the JSON of the operation, used to cut chunks by bytes without serializing twice
+     */
+    public static long estimateSize(RestOperations.RestOperation operation) {
+        return 40 + operation.getUri().length() + operation.getBaseUri().length() + estimateSize(operation.getData());
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) return 4;
+        if (value instanceof String) return ((String) value).length() + 2;
+        if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimateSize(entry.getKey()) + estimateSize(entry.getValue()) + 2;
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 2;
+            for (Object element : (Collection<?>) value) {
+                size += estimateSize(element) + 1;
+            }
+            return size;
+        }
+        if (value.getClass().isArray()) return 2 + 8 * java.lang.reflect.Array.getLength(value);
+        return 8;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.neo4j.rest.graphdb.RequestResult;
+import org.neo4j.rest.graphdb.RestAPI;
+import org.neo4j.rest.graphdb.RestResultException;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.StreamJsonHelper;
+
+/**
+ * Reads the response of a batch request entry by entry from the token stream. The body of each entry is parsed
+ * once and handed to the converter of its operation as it is, and the converted result updates the entity of
+ * the operation right away, so neither the whole response array, a serialized copy of a body nor the converted
+ * results are kept. A batch that fails as a whole is reported before any entry; if the server streams the entries
+ * and one of them fails, the entities of the entries before it were already updated although the server rolled
+ * them back.
+ */
+public class BatchResponseReader {
+    private final Map<Long, RestOperations.RestOperation> operations;
+    private final Map<Long, String> locations;
+    private final RestAPI restApi;
+
+    /**
+     * @param locations if not null collects the locations of created entities
+     * @param restApi passed on to the entities when they are updated
+     */
+    public BatchResponseReader(Map<Long, RestOperations.RestOperation> operations, Map<Long, String> locations, RestAPI restApi) {
+        this.operations = operations;
+        this.locations = locations;
+        this.restApi = restApi;
+    }
+
+    /**
+     * Updates the entities of the operations from their results.
+     * @throws RestResultException if the batch or one of its operations failed
+     */
+    public void read(RequestResult response) {
+        final JsonParser parser = createParser(response);
+        try {
+            read(parser);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading batch response", e);
+        } finally {
+            response.close();
+        }
+    }
+
+    private void read(JsonParser parser) throws IOException {
+        long parseStart = CallTrace.start();
+        final JsonToken first = parser.nextToken();
+        if (first != JsonToken.START_ARRAY) {
+            final Object result = first == null ? null : StreamJsonHelper.readValue(parser);
+            if (RestResultException.isExceptionResult(result)) throw new RestResultException(result);
+            throw new RuntimeException("Unexpected batch response " + result);
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            final Map<String, Object> entry = new LinkedHashMap<String, Object>(8);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                entry.put(field, StreamJsonHelper.readValue(parser));
+            }
+            if (RestResultException.isExceptionResult(entry)) {
+                throw new RestResultException(entry);
+            }
+            final Long batchId = ((Number) entry.get("id")).longValue();
+            final String location = (String) entry.get("location");
+            if (locations != null && location != null) {
+                locations.put(batchId, location);
+            }
+            final RestOperations.RestOperation operation = operations.get(batchId);
+            if (operation != null && operation.getEntity() != null) {
+                CallTrace.end(CallTrace.Phase.PARSE, parseStart);
+                final long convertStart = CallTrace.start();
+                operation.updateEntity(operation.getResultConverter().convertFromRepresentation(RequestResult.fromBody(location, entry.get("body"))), restApi);
+                CallTrace.end(CallTrace.Phase.CONVERT, convertStart);
+                parseStart = CallTrace.start();
+            }
+        }
+        CallTrace.end(CallTrace.Phase.PARSE, parseStart);
+    }
+
+    private static JsonParser createParser(RequestResult response) {
+        if (response.isStreaming()) return StreamJsonHelper.createJsonParser(CallTrace.countIn(response.getStream()));
+        final String text = response.getText();
+        CallTrace.countIn(text.length());
+        return StreamJsonHelper.createJsonParser(text);
+    }
+}
@@ -20,10 +20,11 @@
 package org.neo4j.rest.graphdb.batch;
 
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
@@ -35,21 +36,33 @@ import org.neo4j.rest.graphdb.converter.RelationshipIterableConverter;
 import org.neo4j.rest.graphdb.converter.RestEntityExtractor;
 import org.neo4j.rest.graphdb.converter.RestEntityPropertyRefresher;
 import org.neo4j.rest.graphdb.converter.RestIndexHitsConverter;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicy;
 import org.neo4j.rest.graphdb.entity.RestEntity;
+import org.neo4j.rest.graphdb.entity.RestEntityCache;
 import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.entity.RestRelationship;
 import org.neo4j.rest.graphdb.index.IndexInfo;
 import org.neo4j.rest.graphdb.index.RestIndex;
 import org.neo4j.rest.graphdb.index.SimpleIndexHits;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.Config;
 
 public class BatchRestAPI extends ExecutingRestAPI {
 
     private final ExecutingRestAPI executingRestApi;
+    private final int maxChunkOperations = getConfig().getBatchChunkSize();
+    private final long maxChunkBytes = getConfig().getBatchChunkBytes();
+    private final ParallelBatchExecutor parallelExecutor;
 
     public BatchRestAPI(String baseUri, RestAPIFacade facade) {
-        super(baseUri,facade);
+        this(baseUri, facade, new RestOperations(new AtomicLong(), facade.getConfig().getBatchSpillThreshold()));
+    }
+
+    public BatchRestAPI(String baseUri, RestAPIFacade facade, RestOperations operations) {
+        super(baseUri, null, null, facade, facade.getConfig());
         executingRestApi = facade.getDirect();
-        this.restRequest =  new RecordingRestRequest(new RestOperations(), baseUri);
+        parallelExecutor = facade.getParallelBatchExecutor();
+        this.restRequest =  new RecordingRestRequest(operations, baseUri);
     }
 
     @Override
@@ -57,10 +70,29 @@ public class BatchRestAPI extends ExecutingRestAPI {
         return restRequest;
     }
 
+    @Override
+    protected RestEntityCache createEntityCache() {
+        return null;
+    }
+
+    @Override
+    protected ReadCoalescer createReadCoalescer() {
+        return null;
+    }
+
+    @Override
+    public RestEntityCache getEntityCache() {
+        return executingRestApi.getEntityCache();
+    }
+
+    @Override
+    public PropertyRefreshPolicy getPropertyRefreshPolicy() {
+        return executingRestApi.getPropertyRefreshPolicy();
+    }
+
     @Override
     protected RestRequest createRestRequest( String uri, String user, String password){
-        final ExecutingRestRequest executingRestRequest = new ExecutingRestRequest(uri, user, password);
-        return new RecordingRestRequest(new RestOperations(), executingRestRequest.getUri());
+        return new RecordingRestRequest(new RestOperations(), uri);
     }
     
     
@@ -113,7 +145,8 @@ public class BatchRestAPI extends ExecutingRestAPI {
     public void setPropertyOnEntity( RestEntity entity, String key, Object value ) {       
         RequestResult response = getRestRequest().with(entity.getUri()).put("properties/" + key, value);
         final long batchId = response.getBatchId();     
-        getRecordingRequest().getOperations().addToRestOperation(batchId, entity, new RestEntityPropertyRefresher(entity));       
+        getRecordingRequest().getOperations().addToRestOperation(batchId, entity, new RestEntityPropertyRefresher(entity));
+        invalidate(entity);
     }
     
     @Override
@@ -127,89 +160,94 @@ public class BatchRestAPI extends ExecutingRestAPI {
         restRequest.post(index.indexPath(), data);
     }
 
+    /**
+     * sends the recorded operations, in chunks of at most {@link Config#BATCH_CHUNK_SIZE} operations or about
+     * {@link Config#BATCH_CHUNK_BYTES} bytes if either is set. Each chunk is executed in its own server
+     * transaction, so a chunked batch is not atomic. With {@link Config#BATCH_PARALLELISM} independent operations
+     * are sent as concurrent sub-batches, which aren't atomic either.
+     */
     public void executeBatchRequest() {
-        stop();
-        RestOperations operations = getRecordedOperations();
-        RequestResult response = executingRestApi.batch(createBatchRequestData(operations));
-        Map<Long, Object> mappedObjects = convertRequestResultToEntities(operations, response);
-        updateRestOperations(operations, mappedObjects);
+        executeBatchRequest(null);
     }
 
-    protected void updateRestOperations(RestOperations operations, Map<Long, Object> mappedObjects) {
-        for (RestOperations.RestOperation operation : operations.getRecordedRequests().values()) {
-            operation.updateEntity(mappedObjects.get(operation.getBatchId()), executingRestApi);
+    /**
+     * @param locations if not null, resolves references to entities created by other batches and collects the
+     * locations of the entities created by this one
+     */
+    public void executeBatchRequest(Map<Long, String> locations) {
+        stop();
+        final Map<Long, RestOperations.RestOperation> recorded = getRecordedOperations().getRecordedRequests();
+        final CallTrace trace = CallTrace.begin("batch", String.format("%s/batch with %d operations", executingRestApi.getBaseUri(), recorded.size()), executingRestApi.getConfig().getSlowOperationThreshold());
+        try {
+            executeBatch(recorded, locations);
+        } finally {
+            getRecordedOperations().close();
+            if (trace != null) trace.finish();
         }
     }
 
-    @Override
-    protected <T extends PropertyContainer> String indexPath(String indexPath, T entity) {
-        RestEntity restEntity = (RestEntity) entity;
-        if (isNewEntity(restEntity)) throw new UnsupportedOperationException("Cannot delete newly created entities from index " + entity);
-        return super.indexPath(indexPath, restEntity);
-    }
-
-    private boolean isNewEntity(RestEntity restEntity) {
-        return restEntity.getUri().startsWith("{");
+    private void executeBatch(Map<Long, RestOperations.RestOperation> recorded, Map<Long, String> locations) {
+        // spilled operations are read back in order, splitting would hold them all on heap again
+        if (parallelExecutor != null && recorded.size() > 1 && !getRecordedOperations().isSpilled()) {
+            parallelExecutor.execute(this, recorded, locations);
+            return;
+        }
+        executeSequentially(recorded, locations);
     }
 
-    @SuppressWarnings("unchecked")
-    protected Map<Long, Object> convertRequestResultToEntities(RestOperations operations, RequestResult response) {
-        Object result = response.toEntity();
-        if (RestResultException.isExceptionResult(result)) {
-            throw new RestResultException(result);
+    void executeSequentially(Map<Long, RestOperations.RestOperation> recorded, Map<Long, String> locations) {
+        if (!isChunked()) {
+            executeChunk(recorded, locations);
+            return;
         }
-        Collection<Map<String, Object>> responseCollection = (Collection<Map<String, Object>>) result;
-        Map<Long, Object> mappedObjects = new HashMap<Long, Object>(responseCollection.size());
-        for (Map<String, Object> entry : responseCollection) {
-            if (RestResultException.isExceptionResult(entry)) {
-                throw new RestResultException(entry);
-            }
-            final Long batchId = getBatchId(entry);
-            final RequestResult subResult = RequestResult.extractFrom(entry);
-            RestOperations.RestOperation restOperation = operations.getOperation(batchId);
-            if (restOperation.getEntity() != null){
-                Object entity = restOperation.getResultConverter().convertFromRepresentation(subResult);
-                mappedObjects.put(batchId, entity);
+        if (locations == null) locations = new HashMap<Long, String>();
+        final Map<Long, RestOperations.RestOperation> chunk = new LinkedHashMap<Long, RestOperations.RestOperation>();
+        long chunkBytes = 0;
+        for (Iterator<RestOperations.RestOperation> it = recorded.values().iterator(); it.hasNext(); ) {
+            final RestOperations.RestOperation operation = it.next();
+            it.remove();
+            chunk.put(operation.getBatchId(), operation);
+            if (maxChunkBytes > 0) chunkBytes += BatchRequestWriter.estimateSize(operation);
+            if ((maxChunkOperations > 0 && chunk.size() >= maxChunkOperations) || (maxChunkBytes > 0 && chunkBytes >= maxChunkBytes)) {
+                executeChunk(chunk, locations);
+                chunk.clear();
+                chunkBytes = 0;
             }
-
         }
-        return mappedObjects;
+        if (!chunk.isEmpty()) executeChunk(chunk, locations);
     }
 
+    String getExecutingBaseUri() {
+        return executingRestApi.getBaseUri();
+    }
 
-    private Long getBatchId(Map<String, Object> entry) {
-        return ((Number) entry.get("id")).longValue();
+    private boolean isChunked() {
+        return maxChunkOperations > 0 || maxChunkBytes > 0;
     }
 
-    protected Collection<Map<String, Object>> createBatchRequestData(RestOperations operations) {
-        Collection<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
-        final String baseUri = executingRestApi.getBaseUri();
-        for (RestOperations.RestOperation operation : operations.getRecordedRequests().values()) {
-            Map<String, Object> params = new HashMap<String, Object>();
-            params.put("method", operation.getMethod());
-            if (operation.isSameUri(baseUri)) {
-                params.put("to", operation.getUri());
-            } else {
-                params.put("to",createOperationUri(operation));
-            }
-            if (operation.getData() != null) {
-                params.put("body", operation.getData());
-            }
-            params.put("id", operation.getBatchId());
-            batch.add(params);
-        }
-        return batch;
+    private void executeChunk(Map<Long, RestOperations.RestOperation> chunk, Map<Long, String> locations) {
+        final BatchRequestWriter writer = new BatchRequestWriter(chunk.values(), executingRestApi.getBaseUri(), locations);
+        RequestResult response = executingRestApi.batch(writer);
+        updateEntities(chunk, response, locations);
     }
 
-    private String createOperationUri(RestOperations.RestOperation operation){
-        String uri =  operation.getBaseUri();
-        String suffix = operation.getUri();
-        if (suffix.startsWith("/")){
-            return uri + suffix;
-        }
-        return uri + "/" + suffix;
+    @Override
+    protected <T extends PropertyContainer> String indexPath(String indexPath, T entity) {
+        RestEntity restEntity = (RestEntity) entity;
+        if (isNewEntity(restEntity)) throw new UnsupportedOperationException("Cannot delete newly created entities from index " + entity);
+        return super.indexPath(indexPath, restEntity);
     }
 
+    private boolean isNewEntity(RestEntity restEntity) {
+        return restEntity.getUri().startsWith("{");
+    }
+
+    /**
+     * @param locations if not null collects the locations of created entities to resolve references from later chunks
+     */
+    protected void updateEntities(Map<Long, RestOperations.RestOperation> operations, RequestResult response, Map<Long, String> locations) {
+        new BatchResponseReader(operations, locations, executingRestApi).read(response);
+    }
 
     private static class BatchIndexInfo implements IndexInfo {
 
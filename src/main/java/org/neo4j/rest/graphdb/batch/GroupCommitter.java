@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.rest.graphdb.RestAPIFacade;
+
+/**
+ * Collects single writes of concurrent threads into shared batch requests. The first thread recording into a new
+ * group waits up to the linger time, or until the group is full, and then sends it; every thread returns once the
+ * group was executed, with its recorded entities updated from the batch result. All writes of a group run in one
+ * server transaction, so a failing write fails the whole group and every caller in it gets the exception.
+ */
+public class GroupCommitter {
+    private final RestAPIFacade facade;
+    private final long lingerNanos;
+    private final int maxOperations;
+    private Group current;
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+
+    public GroupCommitter(RestAPIFacade facade, long lingerMillis, int maxOperations) {
+        if (maxOperations < 1) throw new IllegalArgumentException("Group size must be positive, got " + maxOperations);
+        this.facade = facade;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * records the write into the current group and blocks until the group was sent
+     */
+    public <T> T execute(BatchCallback<T> write) {
+        final Group group;
+        final T result;
+        final boolean leader;
+        synchronized (this) {
+            leader = current == null;
+            if (leader) current = new Group(new BatchRestAPI(facade.getBaseUri(), facade));
+            group = current;
+            try {
+                result = write.recordBatch(group.batchRestAPI);
+            } catch (RuntimeException e) {
+                // nobody joined a group whose leader was rejected, drop it so the next writer starts a new one
+                if (leader) {
+                    current = null;
+                    group.done.countDown();
+                }
+                throw e;
+            }
+            operations.incrementAndGet();
+            if (++group.operations >= maxOperations) {
+                current = null;
+                group.full.countDown();
+            }
+        }
+        if (leader) {
+            group.awaitFull(lingerNanos);
+            synchronized (this) {
+                if (current == group) current = null;
+            }
+            group.execute();
+            groups.incrementAndGet();
+        } else {
+            group.awaitDone();
+        }
+        group.rethrow();
+        return result;
+    }
+
+    public long getGroups() {
+        return groups.get();
+    }
+
+    public long getOperations() {
+        return operations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommitter[groups=%d, operations=%d]", getGroups(), getOperations());
+    }
+
+    private static class Group {
+        private final BatchRestAPI batchRestAPI;
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int operations;
+        private volatile RuntimeException failure;
+
+        Group(BatchRestAPI batchRestAPI) {
+            this.batchRestAPI = batchRestAPI;
+        }
+
+        void awaitFull(long nanos) {
+            try {
+                full.await(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // send what was collected so far, the other writers are waiting for it
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void execute() {
+            try {
+                batchRestAPI.executeBatchRequest();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // the write is already recorded and will be sent, wait for its outcome
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        void rethrow() {
+            if (failure != null) throw failure;
+        }
+    }
+}
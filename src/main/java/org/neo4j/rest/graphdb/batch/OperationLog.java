@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.ws.rs.core.MediaType;
+
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.rest.graphdb.util.StreamJsonHelper;
+
+/**
+ * Recorded operations of a batch that keeps only the most recent ones on heap. Once more than the threshold are
+ * held, the older operations are appended to a temporary file as JSON records; spilled operations with an
+ * entity to update keep that entity and its converter on heap, without their data. Iterating reads the
+ * spilled operations back one at a time in recorded order, followed by the ones on heap. {@link #get} only
+ * finds operations kept on heap, which are the ones whose results are needed. The file is deleted by
+ * {@link #close()}.
+ */
+public class OperationLog extends AbstractMap<Long, RestOperations.RestOperation> {
+    private final int threshold;
+    private final LinkedHashMap<Long, RestOperations.RestOperation> recent = new LinkedHashMap<Long, RestOperations.RestOperation>();
+    private final Map<Long, RestOperations.RestOperation> retained = new HashMap<Long, RestOperations.RestOperation>();
+    private File file;
+    private DataOutputStream out;
+    private final Set<Long> removedIds = new HashSet<Long>();
+    private int spilled;
+    private int removed;
+    private int skipped;
+    private long skippedBytes;
+
+    public OperationLog(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("Spill threshold must be positive, got " + threshold);
+        this.threshold = threshold;
+    }
+
+    @Override
+    public RestOperations.RestOperation put(Long batchId, RestOperations.RestOperation operation) {
+        final RestOperations.RestOperation previous = recent.put(batchId, operation);
+        if (recent.size() > threshold) spill();
+        return previous;
+    }
+
+    @Override
+    public RestOperations.RestOperation get(Object batchId) {
+        final RestOperations.RestOperation operation = recent.get(batchId);
+        return operation != null ? operation : retained.get(batchId);
+    }
+
+    @Override
+    public boolean containsKey(Object batchId) {
+        return get(batchId) != null;
+    }
+
+    @Override
+    public int size() {
+        return spilled - removed + recent.size();
+    }
+
+    public boolean isSpilled() {
+        return spilled > 0;
+    }
+
+    /**
+     * @return the spill file or null if nothing was spilled
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * deletes the spill file, the spilled operations can't be read afterwards
+     */
+    public void close() {
+        if (file == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            // deleted anyway
+        }
+        file.delete();
+        file = null;
+    }
+
+    @Override
+    public Set<Entry<Long, RestOperations.RestOperation>> entrySet() {
+        return new AbstractSet<Entry<Long, RestOperations.RestOperation>>() {
+            @Override
+            public Iterator<Entry<Long, RestOperations.RestOperation>> iterator() {
+                return new LogIterator();
+            }
+
+            @Override
+            public int size() {
+                return OperationLog.this.size();
+            }
+        };
+    }
+
+    /**
+     * appends all but the latest operation, its entity is attached after it was recorded
+     */
+    private void spill() {
+        try {
+            if (file == null) {
+                file = File.createTempFile("neo4j-rest-batch", ".log");
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+            }
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            for (Iterator<RestOperations.RestOperation> it = recent.values().iterator(); recent.size() > 1; ) {
+                final RestOperations.RestOperation operation = it.next();
+                it.remove();
+                buffer.reset();
+                StreamJsonHelper.writeJsonTo(MapUtil.map("id", operation.getBatchId(), "method", operation.getMethod().name(),
+                        "uri", operation.getUri(), "baseUri", operation.getBaseUri(), "data", operation.getData()), buffer, false);
+                out.writeInt(buffer.size());
+                buffer.writeTo(out);
+                spilled++;
+                if (operation.getEntity() != null) {
+                    operation.dropData();
+                    retained.put(operation.getBatchId(), operation);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error spilling batch operations to " + file, e);
+        }
+    }
+
+    private class LogIterator implements Iterator<Entry<Long, RestOperations.RestOperation>> {
+        private final Iterator<RestOperations.RestOperation> recentOperations = recent.values().iterator();
+        private DataInputStream in;
+        private int read;
+        private long position;
+        private RestOperations.RestOperation nextSpilled;
+        private boolean lastSpilled;
+        private int lastIndex;
+        private long lastEnd;
+        private RestOperations.RestOperation last;
+
+        LogIterator() {
+            if (spilled == skipped) return;
+            try {
+                out.flush();
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+                long remaining = skippedBytes;
+                while (remaining > 0) remaining -= in.skip(remaining);
+                read = skipped;
+                position = skippedBytes;
+            } catch (IOException e) {
+                closeInput();
+                throw new RuntimeException("Error reading batch operations from " + file, e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextSpilled == null && in != null && read < spilled) {
+                final RestOperations.RestOperation operation = readSpilled();
+                if (!removedIds.contains(operation.getBatchId())) nextSpilled = operation;
+            }
+            if (nextSpilled != null) return true;
+            closeInput();
+            return recentOperations.hasNext();
+        }
+
+        @Override
+        public Entry<Long, RestOperations.RestOperation> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            lastSpilled = nextSpilled != null;
+            if (lastSpilled) {
+                last = nextSpilled;
+                nextSpilled = null;
+                lastIndex = read - 1;
+                lastEnd = position;
+            } else {
+                last = recentOperations.next();
+            }
+            return new SimpleImmutableEntry<Long, RestOperations.RestOperation>(last.getBatchId(), last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) throw new IllegalStateException();
+            if (lastSpilled) {
+                removed++;
+                retained.remove(last.getBatchId());
+                // removing in recorded order, like sending in chunks does, just moves the start of the log
+                if (lastIndex == skipped) {
+                    skipped++;
+                    skippedBytes = lastEnd;
+                } else {
+                    removedIds.add(last.getBatchId());
+                }
+            } else {
+                recentOperations.remove();
+            }
+            last = null;
+        }
+
+        private RestOperations.RestOperation readSpilled() {
+            try {
+                final byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                read++;
+                position += 4 + record.length;
+                final Map<?, ?> values = (Map<?, ?>) StreamJsonHelper.readValue(StreamJsonHelper.createJsonParser(new ByteArrayInputStream(record)));
+                final long batchId = ((Number) values.get("id")).longValue();
+                final RestOperations.RestOperation operation = new RestOperations.RestOperation(batchId,
+                        RestOperations.RestOperation.Methods.valueOf((String) values.get("method")), (String) values.get("uri"),
+                        MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_JSON_TYPE, values.get("data"), (String) values.get("baseUri"));
+                final RestOperations.RestOperation heldOperation = retained.get(batchId);
+                if (heldOperation != null) operation.setEntity(heldOperation.getEntity(), heldOperation.getResultConverter());
+                return operation;
+            } catch (IOException e) {
+                closeInput();
+                throw new RuntimeException("Error reading batch operations from " + file, e);
+            }
+        }
+
+        private void closeInput() {
+            if (in == null) return;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // only read
+            }
+            in = null;
+        }
+    }
+}
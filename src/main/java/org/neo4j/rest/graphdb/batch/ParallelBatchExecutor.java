@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a batch into sub-batches of independent operations and sends them at the same time over separate
+ * connections, so the server can execute one large import on several cores. Operations that address the same
+ * node or relationship, the same created entity ({batchId}), or the same index if the batch removes from it,
+ * always end up in the same sub-batch in their recorded order. That includes creating relationships, the server
+ * locks both end nodes until the sub-batch commits, and sub-batches locking the same nodes in different orders
+ * would deadlock. Operations referencing an entity created by another sub-batch run in a later wave, once all
+ * sub-batches of the earlier waves completed, with the references replaced by the locations of the created
+ * entities. A typical import of nodes followed by the relationships between them creates the nodes concurrently
+ * and then the relationships of each connected set of nodes in one sub-batch. Batches with operations whose effects can't be
+ * told from their uri, like cypher queries or deleting existing nodes, are sent as they are. Each sub-batch runs in
+ * its own server transaction, so a split batch is not atomic, and a failing wave stops the later ones.
+ */
+public class ParallelBatchExecutor {
+    private static final Pattern ENTITY = Pattern.compile("(?:^|/)((?:node|relationship)/\\d+)(?:/|$)");
+    private static final Pattern INDEX = Pattern.compile("(?:^|/)(index/(?:node|relationship)/[^/?]+)");
+    private static final Pattern REFERENCE = Pattern.compile("\\{(\\d+)\\}");
+    private static final Pattern EXISTING_NODE = Pattern.compile("(?:^|/)node/\\d+$");
+
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong splitBatches = new AtomicLong();
+    private final AtomicLong subBatches = new AtomicLong();
+
+    public ParallelBatchExecutor(int parallelism) {
+        if (parallelism < 2) throw new IllegalArgumentException("Batch parallelism must be at least 2, got " + parallelism);
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "neo4j-rest-batch-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * executes the operations as independent sub-batches, wave by wave, and waits for all of them
+     * @param locations if not null, resolves references to entities of other batches and collects the locations
+     * of the created entities
+     * @throws RuntimeException the first failure of a sub-batch, after the others of its wave completed
+     */
+    void execute(final BatchRestAPI batchRestAPI, Map<Long, RestOperations.RestOperation> operations, Map<Long, String> locations) {
+        batches.incrementAndGet();
+        final List<List<Map<Long, RestOperations.RestOperation>>> waves = split(operations.values(), batchRestAPI.getExecutingBaseUri());
+        if (waves.size() < 2 && waves.get(0).size() < 2) {
+            batchRestAPI.executeSequentially(operations, locations);
+            return;
+        }
+        splitBatches.incrementAndGet();
+        // later waves reference the entities created by earlier ones through their locations
+        final Map<Long, String> resolved = locations == null ? new HashMap<Long, String>() : locations;
+        for (List<Map<Long, RestOperations.RestOperation>> wave : waves) {
+            subBatches.addAndGet(wave.size());
+            executeWave(batchRestAPI, wave, resolved);
+        }
+    }
+
+    private void executeWave(final BatchRestAPI batchRestAPI, List<Map<Long, RestOperations.RestOperation>> wave, Map<Long, String> locations) {
+        final List<Future<Map<Long, String>>> futures = new ArrayList<Future<Map<Long, String>>>(wave.size());
+        for (final Map<Long, RestOperations.RestOperation> subBatch : wave) {
+            final Map<Long, String> subLocations = new HashMap<Long, String>(locations);
+            futures.add(executor.submit(new Callable<Map<Long, String>>() {
+                public Map<Long, String> call() {
+                    batchRestAPI.executeSequentially(subBatch, subLocations);
+                    return subLocations;
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (Future<Map<Long, String>> future : futures) {
+            try {
+                locations.putAll(await(future));
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * @return waves of the operations, each grouped into at most as many sub-batches as the parallelism and keeping
+     * the recorded order, or a single wave with a single sub-batch if the operations can't be split safely
+     */
+    public List<List<Map<Long, RestOperations.RestOperation>>> split(Collection<RestOperations.RestOperation> operations, String baseUri) {
+        final List<RestOperations.RestOperation> ordered = new ArrayList<RestOperations.RestOperation>(operations);
+        final int[] parents = new int[ordered.size()];
+        final Map<Long, Integer> indexes = new HashMap<Long, Integer>(ordered.size() * 2);
+        for (int i = 0; i < ordered.size(); i++) {
+            parents[i] = i;
+            indexes.put(ordered.get(i).getBatchId(), i);
+        }
+        final String[] targets = new String[ordered.size()];
+        final Set<String> removedFrom = new HashSet<String>();
+        for (int i = 0; i < ordered.size(); i++) {
+            final RestOperations.RestOperation operation = ordered.get(i);
+            targets[i] = target(operation, baseUri);
+            if (targets[i] == null) return single(operations);
+            if (operation.getMethod() != RestOperations.RestOperation.Methods.DELETE) continue;
+            if (EXISTING_NODE.matcher(targets[i]).find()) return single(operations);
+            final Matcher index = INDEX.matcher(targets[i]);
+            if (index.find()) removedFrom.add(index.group(1));
+        }
+        // adding to an index commutes, only removals have to stay in order with the additions
+        final Map<String, Integer> owners = new HashMap<String, Integer>();
+        final List<int[]> references = new ArrayList<int[]>();
+        for (int i = 0; i < ordered.size(); i++) {
+            final RestOperations.RestOperation operation = ordered.get(i);
+            final List<String> keys = new ArrayList<String>();
+            collectKeys(targets[i], keys);
+            final Matcher index = INDEX.matcher(targets[i]);
+            if (index.find() && removedFrom.contains(index.group(1))) keys.add(index.group(1));
+            collectData(operation.getData(), keys);
+            for (String key : keys) {
+                final Matcher reference = REFERENCE.matcher(key);
+                if (reference.matches()) {
+                    final Integer producer = indexes.get(Long.valueOf(reference.group(1)));
+                    if (producer != null) references.add(new int[]{producer, i});
+                }
+                final Integer owner = owners.get(key);
+                if (owner == null) owners.put(key, i);
+                else union(parents, i, owner);
+            }
+        }
+        final int[] waves = waves(parents, references);
+        final Map<Integer, Map<Integer, Integer>> sizes = new TreeMap<Integer, Map<Integer, Integer>>();
+        for (int i = 0; i < ordered.size(); i++) {
+            final int root = find(parents, i);
+            Map<Integer, Integer> wave = sizes.get(waves[root]);
+            if (wave == null) sizes.put(waves[root], wave = new HashMap<Integer, Integer>());
+            final Integer size = wave.get(root);
+            wave.put(root, size == null ? 1 : size + 1);
+        }
+        final Map<Integer, Map<Long, RestOperations.RestOperation>> assigned = new HashMap<Integer, Map<Long, RestOperations.RestOperation>>();
+        final List<List<Map<Long, RestOperations.RestOperation>>> result = new ArrayList<List<Map<Long, RestOperations.RestOperation>>>(sizes.size());
+        boolean parallel = false;
+        for (Map<Integer, Integer> wave : sizes.values()) {
+            final List<Map<Long, RestOperations.RestOperation>> subBatches = pack(wave, assigned);
+            if (subBatches.size() > 1) parallel = true;
+            result.add(subBatches);
+        }
+        if (!parallel) return single(operations);
+        for (int i = 0; i < ordered.size(); i++) {
+            final RestOperations.RestOperation operation = ordered.get(i);
+            assigned.get(find(parents, i)).put(operation.getBatchId(), operation);
+        }
+        return result;
+    }
+
+    /**
+     * @return the wave of each component by its root, one after the latest wave of the components it references;
+     * components that reference each other are merged into one
+     */
+    private static int[] waves(int[] parents, List<int[]> references) {
+        final int[] waves = new int[parents.length];
+        boolean changed = true;
+        for (int round = 0; changed; round++) {
+            if (round > parents.length) {
+                for (int[] reference : references) {
+                    if (waves[find(parents, reference[1])] <= waves[find(parents, reference[0])]) union(parents, reference[0], reference[1]);
+                }
+                Arrays.fill(waves, 0);
+                round = 0;
+            }
+            changed = false;
+            for (int[] reference : references) {
+                final int producer = find(parents, reference[0]);
+                final int consumer = find(parents, reference[1]);
+                if (producer != consumer && waves[consumer] <= waves[producer]) {
+                    waves[consumer] = waves[producer] + 1;
+                    changed = true;
+                }
+            }
+        }
+        return waves;
+    }
+
+    /**
+     * packs the components of one wave, largest first onto the smallest sub-batch
+     * @param assigned collects the sub-batch of each component by its root
+     */
+    private List<Map<Long, RestOperations.RestOperation>> pack(Map<Integer, Integer> sizes, Map<Integer, Map<Long, RestOperations.RestOperation>> assigned) {
+        final int groups = Math.min(parallelism, sizes.size());
+        final List<Map.Entry<Integer, Integer>> components = new ArrayList<Map.Entry<Integer, Integer>>(sizes.entrySet());
+        Collections.sort(components, new Comparator<Map.Entry<Integer, Integer>>() {
+            public int compare(Map.Entry<Integer, Integer> a, Map.Entry<Integer, Integer> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        final int[] load = new int[groups];
+        final List<Map<Long, RestOperations.RestOperation>> result = new ArrayList<Map<Long, RestOperations.RestOperation>>(groups);
+        for (int g = 0; g < groups; g++) {
+            result.add(new LinkedHashMap<Long, RestOperations.RestOperation>());
+        }
+        for (Map.Entry<Integer, Integer> component : components) {
+            int smallest = 0;
+            for (int g = 1; g < groups; g++) {
+                if (load[g] < load[smallest]) smallest = g;
+            }
+            load[smallest] += component.getValue();
+            assigned.put(component.getKey(), result.get(smallest));
+        }
+        return result;
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getSplitBatches() {
+        return splitBatches.get();
+    }
+
+    public long getSubBatches() {
+        return subBatches.get();
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ParallelBatchExecutor[batches=%d, split=%d, subBatches=%d]", getBatches(), getSplitBatches(), getSubBatches());
+    }
+
+    /**
+     * @return the uri of the operation relative to the server's base uri, null if its effects are not known
+     */
+    private static String target(RestOperations.RestOperation operation, String baseUri) {
+        String target;
+        if (operation.isSameUri(baseUri)) {
+            target = operation.getUri();
+        } else {
+            final String base = operation.getBaseUri();
+            if (base.startsWith(baseUri)) target = base.substring(baseUri.length()) + "/" + operation.getUri();
+            else if (base.startsWith("{")) target = base + "/" + operation.getUri();
+            else return null;
+        }
+        if (target.startsWith("/")) target = target.substring(1);
+        if (target.endsWith("/")) target = target.substring(0, target.length() - 1);
+        if (target.startsWith("node") || target.startsWith("relationship") || target.startsWith("index/") || target.startsWith("{")) {
+            return target;
+        }
+        return null;
+    }
+
+    private static void collectKeys(String value, List<String> keys) {
+        if (value.indexOf('/') == -1 && value.indexOf('{') == -1) return;
+        final Matcher entity = ENTITY.matcher(value);
+        while (entity.find()) {
+            keys.add(entity.group(1));
+        }
+        final Matcher reference = REFERENCE.matcher(value);
+        while (reference.find()) {
+            keys.add(reference.group());
+        }
+    }
+
+    private static void collectData(Object value, List<String> keys) {
+        if (value instanceof String) {
+            collectKeys((String) value, keys);
+        } else if (value instanceof Map) {
+            for (Object element : ((Map<?, ?>) value).values()) {
+                collectData(element, keys);
+            }
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectData(element, keys);
+            }
+        }
+    }
+
+    private static List<List<Map<Long, RestOperations.RestOperation>>> single(Collection<RestOperations.RestOperation> operations) {
+        final Map<Long, RestOperations.RestOperation> all = new LinkedHashMap<Long, RestOperations.RestOperation>();
+        for (RestOperations.RestOperation operation : operations) {
+            all.put(operation.getBatchId(), operation);
+        }
+        return Collections.singletonList(Collections.singletonList(all));
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA != rootB) parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sub-batches", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
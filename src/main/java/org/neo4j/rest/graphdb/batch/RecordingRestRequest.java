@@ -20,8 +20,6 @@
 package org.neo4j.rest.graphdb.batch;
 
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
@@ -30,6 +28,7 @@ import org.neo4j.rest.graphdb.RequestResult;
 import org.neo4j.rest.graphdb.RestRequest;
 import org.neo4j.rest.graphdb.batch.RestOperations.RestOperation;
 import org.neo4j.rest.graphdb.batch.RestOperations.RestOperation.Methods;
+import org.neo4j.rest.graphdb.util.UriEncoder;
 
 
 
@@ -96,6 +95,11 @@ public class RecordingRestRequest implements RestRequest {
     @Override
     public RequestResult get(String path) {
         return this.record(Methods.GET, path, null, getBaseUri());
+    }
+
+    @Override
+    public RequestResult getIfNoneMatch(String path, String eTag) {
+        return get(path);
     }    
     
     public RequestResult record(Methods method, String path, Object data, String baseUri){
@@ -108,12 +112,7 @@ public class RecordingRestRequest implements RestRequest {
     }
 
     public static String encode( Object value ) {
-        if ( value == null ) return "";
-        try {
-            return URLEncoder.encode( value.toString(), "utf-8" ).replaceAll( "\\+", "%20" );
-        } catch ( UnsupportedEncodingException e ) {
-            throw new RuntimeException( e );
-        }
+        return UriEncoder.encode( value );
     }    
     
     public Map<Long,RestOperation> getRecordedRequests(){
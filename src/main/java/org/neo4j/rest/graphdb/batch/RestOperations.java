@@ -33,12 +33,29 @@ import org.neo4j.rest.graphdb.batch.RestOperations.RestOperation.Methods;
 import org.neo4j.rest.graphdb.converter.RestResultConverter;
 
 public class RestOperations {
-    private AtomicLong currentBatchId = new AtomicLong(0);
-    private Map<Long, RestOperation> operations = new LinkedHashMap<Long, RestOperation>();
+    private final AtomicLong currentBatchId;
+    private final Map<Long, RestOperation> operations;
     private MediaType contentType;
     private MediaType acceptHeader; 
     
     public RestOperations(){
+        this(new AtomicLong(0));
+    }
+
+    /**
+     * @param batchIds shared by batches whose operations have to be told apart, e.g. to reference entities of
+     * one batch from another
+     */
+    public RestOperations(AtomicLong batchIds){
+        this(batchIds, 0);
+    }
+
+    /**
+     * @param spillThreshold operations kept on heap before older ones are spilled to a file, 0 keeps all on heap
+     */
+    public RestOperations(AtomicLong batchIds, int spillThreshold){
+        this.currentBatchId = batchIds;
+        this.operations = spillThreshold > 0 ? new OperationLog(spillThreshold) : new LinkedHashMap<Long, RestOperation>();
         this.contentType = MediaType.APPLICATION_JSON_TYPE;
         this.acceptHeader = MediaType.APPLICATION_JSON_TYPE;
     }
@@ -96,6 +113,10 @@ public class RestOperations {
             this.entity = entity;
             this.resultConverter = resultConverter;
         }
+
+        void dropData() {
+            this.data = null;
+        }
         
         public Methods getMethod() {
             return method;
@@ -132,6 +153,20 @@ public class RestOperations {
     public Map<Long,RestOperation> getRecordedRequests(){
         return this.operations;
     }
+
+    /**
+     * @return true if operations were spilled to a file, then only iterating them in order is cheap
+     */
+    public boolean isSpilled() {
+        return operations instanceof OperationLog && ((OperationLog) operations).isSpilled();
+    }
+
+    /**
+     * deletes the spill file once the operations were sent or discarded
+     */
+    public void close() {
+        if (operations instanceof OperationLog) ((OperationLog) operations).close();
+    }
     
     public RequestResult record(Methods method, String path, Object data, String baseUri){
         long batchId = this.currentBatchId.incrementAndGet();
@@ -49,7 +49,7 @@ public class RestTableResultExtractor implements RestResultConverter{
         return result;
     }
 
-    private Map<String, Object> mapRow(List<String> columns, List<?> row) {
+    Map<String, Object> mapRow(List<String> columns, List<?> row) {
         int columnCount = columns.size();
         Map<String, Object> newRow = new HashMap<String, Object>(columnCount);
         for (int i = 0; i < columnCount; i++) {
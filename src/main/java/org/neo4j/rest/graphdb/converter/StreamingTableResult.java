@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.neo4j.helpers.collection.ClosableIterable;
+import org.neo4j.rest.graphdb.RequestResult;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.StreamJsonHelper;
+
+/**
+ * Reads a cypher result table row by row from the still open response stream. Only the current row is held
+ * in memory and the result can be iterated once. The connection is held until the result was iterated to the end,
+ * which closes it, or until {@link #close()} is called, so callers that stop iterating early have to close it.
+ * Closing reads the rest of the response without parsing it, so the connection can be reused. It is only used when
+ * {@link org.neo4j.rest.graphdb.util.Config#STREAM_QUERY_RESULTS} is enabled.
+ */
+public class StreamingTableResult implements ClosableIterable<Map<String, Object>> {
+
+    private final RequestResult requestResult;
+    private final RestTableResultExtractor extractor;
+    private final CallTrace trace;
+    private final InputStream stream;
+    private JsonParser parser;
+    private List<String> columns;
+    private Iterator<?> bufferedRows;
+    private boolean iterated;
+    private boolean closed;
+
+    public StreamingTableResult(RequestResult requestResult, RestEntityExtractor entityExtractor) {
+        this(requestResult, entityExtractor, null);
+    }
+
+    /**
+     * @param trace the detached trace of the query, finished when the result was read to the end or closed
+     */
+    public StreamingTableResult(RequestResult requestResult, RestEntityExtractor entityExtractor, CallTrace trace) {
+        this.requestResult = requestResult;
+        this.extractor = new RestTableResultExtractor(entityExtractor);
+        this.trace = trace;
+        this.stream = trace == null ? requestResult.getStream() : trace.counted(requestResult.getStream());
+        this.parser = StreamJsonHelper.createJsonParser(stream);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        if (iterated) throw new IllegalStateException("Streaming result can only be iterated once");
+        iterated = true;
+        final long start = trace == null ? 0 : System.nanoTime();
+        try {
+            readHeader();
+            if (trace != null) trace.add(CallTrace.Phase.PARSE, System.nanoTime() - start);
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Error reading cypher result", e);
+        }
+        return new Iterator<Map<String, Object>>() {
+            private Map<String, Object> next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) next = fetchNext();
+                return next != null;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                final Map<String, Object> row = next;
+                next = null;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * positions the parser on the first row of "data", if the data comes before the columns it has to be buffered
+     */
+    @SuppressWarnings("unchecked")
+    private void readHeader() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new IllegalStateException("Expected cypher result object");
+        boolean dataFound = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("columns".equals(field)) {
+                columns = (List<String>) StreamJsonHelper.readValue(parser);
+                if (dataFound) return;
+            } else if ("data".equals(field)) {
+                if (columns != null) return;
+                bufferedRows = ((List<?>) StreamJsonHelper.readValue(parser)).iterator();
+                dataFound = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (columns == null || !dataFound) throw new IllegalStateException("Cypher result without columns or data");
+    }
+
+    private Map<String, Object> fetchNext() {
+        if (closed) return null;
+        try {
+            final long start = trace == null ? 0 : System.nanoTime();
+            final List<?> row = nextRow();
+            if (row == null) {
+                close();
+                return null;
+            }
+            if (trace == null) return extractor.mapRow(columns, row);
+            final long converting = System.nanoTime();
+            trace.add(CallTrace.Phase.PARSE, converting - start);
+            final Map<String, Object> mapped = extractor.mapRow(columns, row);
+            trace.add(CallTrace.Phase.CONVERT, System.nanoTime() - converting);
+            return mapped;
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Error reading cypher result row", e);
+        }
+    }
+
+    private List<?> nextRow() throws IOException {
+        if (bufferedRows != null) {
+            return bufferedRows.hasNext() ? (List<?>) bufferedRows.next() : null;
+        }
+        if (parser.nextToken() != JsonToken.START_ARRAY) return null;
+        return (List<?>) StreamJsonHelper.readValue(parser);
+    }
+
+    /**
+     * releases the connection, the rows that were not read yet are skipped
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        drain();
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        requestResult.close();
+        if (trace != null) trace.finish();
+    }
+
+    /**
+     * reads the remaining response, e.g. the end of the result object, a connection with unread data can't be reused
+     */
+    private void drain() {
+        final byte[] buffer = new byte[4096];
+        try {
+            while (stream.read(buffer) != -1) {
+                // skipped
+            }
+        } catch (IOException e) {
+            // the connection is closed instead
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.entity;
+
+/**
+ * Factory for the provided {@link PropertyRefreshPolicy} implementations.
+ */
+public final class PropertyRefreshPolicies {
+
+    private static final PropertyRefreshPolicy NEVER = new PropertyRefreshPolicy() {
+        public boolean hasToRefresh(RestEntity entity, long lastFetched) {
+            return false;
+        }
+
+        public boolean isConditional() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "never";
+        }
+    };
+
+    private PropertyRefreshPolicies() {
+    }
+
+    /**
+     * properties are loaded once and never refreshed, for read-only snapshots
+     */
+    public static PropertyRefreshPolicy never() {
+        return NEVER;
+    }
+
+    /**
+     * properties are refreshed once they are older than the given time
+     */
+    public static PropertyRefreshPolicy timeToLive(long millis) {
+        return new TimeToLive(millis, millis, false);
+    }
+
+    /**
+     * properties of nodes and relationships are refreshed once they are older than the respective time
+     */
+    public static PropertyRefreshPolicy timeToLive(long nodeMillis, long relationshipMillis) {
+        return new TimeToLive(nodeMillis, relationshipMillis, false);
+    }
+
+    /**
+     * properties older than the given time are revalidated with a conditional request (If-None-Match),
+     * if the server didn't send an entity tag they are fetched again
+     */
+    public static PropertyRefreshPolicy conditional(long millis) {
+        return new TimeToLive(millis, millis, true);
+    }
+
+    private static class TimeToLive implements PropertyRefreshPolicy {
+        private final long nodeMillis;
+        private final long relationshipMillis;
+        private final boolean conditional;
+
+        TimeToLive(long nodeMillis, long relationshipMillis, boolean conditional) {
+            if (nodeMillis < 0 || relationshipMillis < 0) throw new IllegalArgumentException("Time to live must not be negative");
+            this.nodeMillis = nodeMillis;
+            this.relationshipMillis = relationshipMillis;
+            this.conditional = conditional;
+        }
+
+        public boolean hasToRefresh(RestEntity entity, long lastFetched) {
+            final long timeToLive = entity instanceof RestRelationship ? relationshipMillis : nodeMillis;
+            return System.currentTimeMillis() - lastFetched > timeToLive;
+        }
+
+        public boolean isConditional() {
+            return conditional;
+        }
+
+        @Override
+        public String toString() {
+            return (conditional ? "conditional" : "timeToLive") + "(nodes: " + nodeMillis + " ms, relationships: " + relationshipMillis + " ms)";
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.entity;
+
+/**
+ * Decides when the property data of a {@link RestEntity} that was already loaded has to be fetched again from the server.
+ * The policy is configured per {@link org.neo4j.rest.graphdb.RestAPIFacade}, see {@link PropertyRefreshPolicies} for
+ * the provided implementations.
+ */
+public interface PropertyRefreshPolicy {
+
+    /**
+     * @param entity the entity whose properties are about to be read
+     * @param lastFetched time in millis when the property data was last fetched or revalidated
+     * @return true if the properties have to be refreshed
+     */
+    boolean hasToRefresh(RestEntity entity, long lastFetched);
+
+    /**
+     * @return true if a refresh should be a conditional request using the entity tag of the last response,
+     * so unchanged properties are not transferred again
+     */
+    boolean isConditional();
+}
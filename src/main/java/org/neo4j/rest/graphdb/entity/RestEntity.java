@@ -32,8 +32,10 @@ import org.neo4j.rest.graphdb.util.ArrayConverter;
 
 public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEntity> {
     private Map<?, ?> structuralData;
-    private Map<String, Object> propertyData;
-    private long lastTimeFetchedPropertyData;
+    // invalidated by the background writers of write-behind while the owning thread reads them
+    private volatile Map<String, Object> propertyData;
+    private volatile long lastTimeFetchedPropertyData;
+    private volatile String propertyDataETag;
     protected RestAPI restApi;
 
     private final ArrayConverter arrayConverter=new ArrayConverter();
@@ -67,6 +69,7 @@ public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEn
         this.uri = updateEntity.getUri();
         this.structuralData = updateEntity.getStructuralData();
         this.propertyData = updateEntity.getPropertyData();    
+        this.propertyDataETag = updateEntity.getPropertyDataETag();
         this.lastTimeFetchedPropertyData = System.currentTimeMillis();
     }    
 
@@ -79,7 +82,9 @@ public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEn
    
     Map<String, Object> getPropertyData() {       
         if (hasToUpdateProperties()) {            
-        	this.propertyData = restApi.getPropertiesFromEntity(this);
+            if (this.propertyData == null) this.propertyDataETag = null;
+            final Map<String, Object> properties = restApi.getPropertiesFromEntity(this);
+            if (properties != null) this.propertyData = properties; // null means not modified since the last fetch
             this.lastTimeFetchedPropertyData = System.currentTimeMillis();
         }
         return this.propertyData;
@@ -87,7 +92,7 @@ public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEn
 
     private boolean hasToUpdateProperties() {
         if (this.propertyData == null) return true;
-        return restApi.hasToUpdate(this.lastTimeFetchedPropertyData);
+        return restApi.getPropertyRefreshPolicy().hasToRefresh(this, this.lastTimeFetchedPropertyData);
     }
 
 
@@ -151,6 +156,7 @@ public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEn
 
     public void invalidatePropertyData() {
         this.propertyData = null;
+        this.propertyDataETag = null;
     }
 
     static long getEntityId( String uri ) {
@@ -193,4 +199,15 @@ public class RestEntity implements PropertyContainer, UpdatableRestResult<RestEn
     public void setLastTimeFetchedPropertyData(long lastTimeFetchedPropertyData) {
         this.lastTimeFetchedPropertyData = lastTimeFetchedPropertyData;
     }
+
+    /**
+     * @return the entity tag of the last property response, used for conditional refreshes
+     */
+    public String getPropertyDataETag() {
+        return propertyDataETag;
+    }
+
+    public void setPropertyDataETag(String propertyDataETag) {
+        this.propertyDataETag = propertyDataETag;
+    }
 }
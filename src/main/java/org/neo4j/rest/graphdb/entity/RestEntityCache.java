@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.entity;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded LRU cache of the structural and property data of nodes and relationships, keyed by their id.
+ * Entries expire after the property refetch time and are invalidated by writes to the entity.
+ */
+public class RestEntityCache {
+    private static final String NODE = "/node/";
+    private static final String RELATIONSHIP = "/relationship/";
+
+    private final Map<Long, CachedData> nodes;
+    private final Map<Long, CachedData> relationships;
+    private volatile long ttlMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RestEntityCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("Cache size must be positive, got " + maxSize);
+        this.ttlMillis = ttlMillis;
+        this.nodes = new LruMap(maxSize);
+        this.relationships = new LruMap(maxSize);
+    }
+
+    public Map<?, ?> getNode(long id) {
+        return dataOf(getNodeEntry(id));
+    }
+
+    public Map<?, ?> getRelationship(long id) {
+        return dataOf(getRelationshipEntry(id));
+    }
+
+    /**
+     * @return the cached node with the time it was loaded or null if it is not cached or expired
+     */
+    public CachedData getNodeEntry(long id) {
+        return get(nodes, id);
+    }
+
+    /**
+     * @return the cached relationship with the time it was loaded or null if it is not cached or expired
+     */
+    public CachedData getRelationshipEntry(long id) {
+        return get(relationships, id);
+    }
+
+    /**
+     * @return a copy of the cached data for the entity uri or null if it is not cached or expired
+     */
+    public Map<?, ?> get(String uri) {
+        final Map<Long, CachedData> entries = entriesFor(uri);
+        if (entries == null) return null;
+        return dataOf(get(entries, RestEntity.getEntityId(uri)));
+    }
+
+    private static Map<?, ?> dataOf(CachedData entry) {
+        return entry == null ? null : entry.getData();
+    }
+
+    private CachedData get(Map<Long, CachedData> entries, long id) {
+        final CachedData entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+            if (entry != null && entry.isExpired(ttlMillis)) {
+                entries.remove(id);
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * caches the representation of a node or relationship as returned by the server
+     */
+    public void put(Map<?, ?> data) {
+        if (data == null) return;
+        final Object uri = data.get("self");
+        if (!(uri instanceof String)) return;
+        final Map<Long, CachedData> entries = entriesFor((String) uri);
+        if (entries == null) return;
+        final CachedData entry = new CachedData(copy(data));
+        synchronized (entries) {
+            entries.put(RestEntity.getEntityId((String) uri), entry);
+        }
+    }
+
+    public void invalidate(String uri) {
+        final Map<Long, CachedData> entries = entriesFor(uri);
+        if (entries == null) return;
+        synchronized (entries) {
+            entries.remove(RestEntity.getEntityId(uri));
+        }
+    }
+
+    public void clear() {
+        synchronized (nodes) {
+            nodes.clear();
+        }
+        synchronized (relationships) {
+            relationships.clear();
+        }
+    }
+
+    private Map<Long, CachedData> entriesFor(String uri) {
+        if (uri == null || uri.startsWith("{")) return null;
+        final int nodeIndex = uri.lastIndexOf(NODE);
+        final int relationshipIndex = uri.lastIndexOf(RELATIONSHIP);
+        if (nodeIndex == -1 && relationshipIndex == -1) return null;
+        final boolean isNode = nodeIndex > relationshipIndex;
+        final int idStart = isNode ? nodeIndex + NODE.length() : relationshipIndex + RELATIONSHIP.length();
+        if (!isNumber(uri, idStart)) return null;
+        return isNode ? nodes : relationships;
+    }
+
+    private boolean isNumber(String uri, int start) {
+        if (start >= uri.length()) return false;
+        for (int i = start; i < uri.length(); i++) {
+            if (!Character.isDigit(uri.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> copy(Map<?, ?> data) {
+        final Map<Object, Object> result = new HashMap<Object, Object>(data);
+        final Object properties = data.get("data");
+        if (properties instanceof Map) {
+            result.put("data", new HashMap<Object, Object>((Map<Object, Object>) properties));
+        }
+        return result;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (nodes) {
+            synchronized (relationships) {
+                return nodes.size() + relationships.size();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RestEntityCache[size=%d, hits=%d, misses=%d, evictions=%d]", size(), getHits(), getMisses(), getEvictions());
+    }
+
+    public static class CachedData {
+        private final Map<?, ?> data;
+        private final long fetchedAt = System.currentTimeMillis();
+
+        CachedData(Map<?, ?> data) {
+            this.data = data;
+        }
+
+        /**
+         * @return a copy of the cached data
+         */
+        public Map<?, ?> getData() {
+            return copy(data);
+        }
+
+        /**
+         * @return the time the data was loaded from the server
+         */
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - fetchedAt > ttlMillis;
+        }
+    }
+
+    private class LruMap extends LinkedHashMap<Long, CachedData> {
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedData> eldest) {
+            if (size() <= maxSize) return false;
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -55,9 +55,20 @@ public class RestQueryResult implements QueryResult<Map<String, Object>> {
         return result.iterator();
     }
 
+    /**
+     * releases the connection of a streamed result that was not iterated to the end
+     */
+    public void close() {
+        result.close();
+    }
+
     public RestQueryResult(Map<?, ?> result, RestAPI restApi, ResultConverter resultConverter) {
         final RestTableResultExtractor extractor = new RestTableResultExtractor(new RestEntityExtractor(restApi));
         final List<Map<String, Object>> data = extractor.extract(result);
         this.result = new QueryResultBuilder<Map<String, Object>>(data, resultConverter);
     }
+
+    public RestQueryResult(Iterable<Map<String, Object>> rows, ResultConverter resultConverter) {
+        this.result = new QueryResultBuilder<Map<String, Object>>(rows, resultConverter);
+    }
 }
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.neo4j.rest.graphdb.util.StreamingJsonEntity;
+
+/**
+ * Routes the requests of one client across the members of a Neo4j HA cluster. Writes go to the master, which is
+ * either configured or found via the HA management endpoint of the members. Reads (GET without a body, read-only
+ * cypher and traversals) go to the healthy member with the fewest outstanding requests, ties are taken in turns. A member that fails
+ * {@code maxFailures} times in a row is ejected for {@code ejectMillis} and then tried again.
+ * Only requests below the data path of a member are routed, all members have to use the same path.
+ */
+public class ClusterRouter extends ClientFilter {
+    public static final String HA_MASTER_PATH = "/db/manage/server/ha/master";
+    private static final Pattern CYPHER_WRITE = Pattern.compile("\\b(create|set|delete|remove|merge|foreach)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final List<Member> members;
+    private final Member configuredMaster;
+    private final int maxFailures;
+    private final long ejectMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Member master;
+    private volatile Client client;
+
+    public ClusterRouter(Collection<String> memberUris, String masterUri, int maxFailures, long ejectMillis) {
+        if (memberUris.isEmpty()) throw new IllegalArgumentException("Cluster needs at least one member");
+        final List<Member> members = new ArrayList<Member>(memberUris.size());
+        for (String uri : memberUris) {
+            members.add(new Member(uri));
+        }
+        this.members = Collections.unmodifiableList(members);
+        this.configuredMaster = masterUri == null ? null : memberFor(URI.create(masterUri));
+        if (masterUri != null && configuredMaster == null) throw new IllegalArgumentException("Master " + masterUri + " is not one of the members " + memberUris);
+        this.master = configuredMaster;
+        this.maxFailures = maxFailures;
+        this.ejectMillis = ejectMillis;
+    }
+
+    /**
+     * the client used to ask the members for their HA role
+     */
+    public void setClient(Client client) {
+        this.client = client;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final URI uri = request.getURI();
+        final Member addressed = memberFor(uri);
+        if (addressed == null) return getNext().handle(request);
+        if (!isRead(request)) return send(request, uri, addressed, master());
+        final Member first = leastOutstanding(null);
+        try {
+            return send(request, uri, addressed, first);
+        } catch (ClientHandlerException e) {
+            final Member second = leastOutstanding(first);
+            if (second == null) throw e;
+            return send(request, uri, addressed, second);
+        }
+    }
+
+    private ClientResponse send(ClientRequest request, URI uri, Member addressed, Member target) {
+        request.setURI(target.rewrite(uri, addressed));
+        target.outstanding.incrementAndGet();
+        target.requests.incrementAndGet();
+        try {
+            final ClientResponse response = getNext().handle(request);
+            if (response.getStatus() >= 500) failed(target);
+            else target.succeeded();
+            return response;
+        } catch (ClientHandlerException e) {
+            failed(target);
+            throw e;
+        } finally {
+            target.outstanding.decrementAndGet();
+        }
+    }
+
+    private void failed(Member member) {
+        if (member.failed(maxFailures, ejectMillis) && member == master && member != configuredMaster) {
+            master = null;
+        }
+    }
+
+    boolean isRead(ClientRequest request) {
+        final String method = request.getMethod();
+        // a GET with a body, like a gremlin script, may write
+        if ("GET".equals(method)) return request.getEntity() == null;
+        if (!"POST".equals(method)) return false;
+        final String path = request.getURI().getPath();
+        if (path.contains("/traverse/")) return true;
+        if (path.endsWith("/cypher")) {
+            final String query = cypherQuery(request.getEntity());
+            return query != null && !CYPHER_WRITE.matcher(query).find();
+        }
+        return false;
+    }
+
+    private String cypherQuery(Object entity) {
+        if (entity instanceof StreamingJsonEntity) entity = ((StreamingJsonEntity) entity).getData();
+        if (entity instanceof Map) {
+            final Object query = ((Map<?, ?>) entity).get("query");
+            return query instanceof String ? (String) query : null;
+        }
+        return null;
+    }
+
+    private Member leastOutstanding(Member exclude) {
+        Member best = null;
+        final int start = (next.getAndIncrement() & Integer.MAX_VALUE) % members.size();
+        for (int i = 0; i < members.size(); i++) {
+            final Member member = members.get((start + i) % members.size());
+            if (member == exclude || !member.isAvailable()) continue;
+            if (best == null || member.outstanding.get() < best.outstanding.get()) best = member;
+        }
+        if (best == null && exclude == null) return master();
+        return best;
+    }
+
+    private Member master() {
+        final Member current = master;
+        if (current != null) return current;
+        // asked without holding the lock, so a slow member doesn't stall the requests that already know the master
+        final Member discovered = discoverMaster();
+        synchronized (this) {
+            if (master == null) master = discovered;
+            return master;
+        }
+    }
+
+    private Member discoverMaster() {
+        final Client client = this.client;
+        if (client != null) {
+            for (Member member : members) {
+                if (!member.isAvailable()) continue;
+                try {
+                    final ClientResponse response = client.resource(member.root + HA_MASTER_PATH).get(ClientResponse.class);
+                    final String text = response.getEntity(String.class);
+                    response.close();
+                    if (response.getStatus() == 200 && "true".equals(text.trim())) return member;
+                } catch (ClientHandlerException e) {
+                    member.failed(maxFailures, ejectMillis);
+                }
+            }
+        }
+        // not an HA cluster or no master elected right now, the first available member takes the writes
+        for (Member member : members) {
+            if (member.isAvailable()) return member;
+        }
+        return members.get(0);
+    }
+
+    private Member memberFor(URI uri) {
+        for (Member member : members) {
+            if (member.addresses(uri)) return member;
+        }
+        return null;
+    }
+
+    /**
+     * @return the member receiving writes, found on first use if not configured
+     */
+    public String getMaster() {
+        return master().uri.toString();
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterRouter" + members;
+    }
+
+    public static class Member {
+        private final URI uri;
+        private final String root;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong ejections = new AtomicLong();
+        private volatile long ejectedUntil;
+
+        Member(String uri) {
+            this.uri = URI.create(uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri);
+            this.root = this.uri.getScheme() + "://" + this.uri.getAuthority();
+        }
+
+        boolean addresses(URI requestUri) {
+            return root.equals(requestUri.getScheme() + "://" + requestUri.getAuthority())
+                    && requestUri.getPath() != null && requestUri.getPath().startsWith(uri.getPath());
+        }
+
+        URI rewrite(URI requestUri, Member addressed) {
+            if (addressed == this) return requestUri;
+            final String query = requestUri.getRawQuery();
+            return URI.create(root + requestUri.getRawPath() + (query == null ? "" : "?" + query));
+        }
+
+        boolean isAvailable() {
+            return ejectedUntil <= System.currentTimeMillis();
+        }
+
+        void succeeded() {
+            failures.set(0);
+        }
+
+        /**
+         * @return true if the member was ejected by this failure
+         */
+        boolean failed(int maxFailures, long ejectMillis) {
+            if (failures.incrementAndGet() < maxFailures) return false;
+            failures.set(0);
+            ejectedUntil = System.currentTimeMillis() + ejectMillis;
+            ejections.incrementAndGet();
+            return true;
+        }
+
+        public String getUri() {
+            return uri.toString();
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getEjections() {
+            return ejections.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[outstanding=%d, requests=%d, ejections=%d, available=%s]", uri, getOutstanding(), getRequests(), getEjections(), isAvailable());
+        }
+    }
+}
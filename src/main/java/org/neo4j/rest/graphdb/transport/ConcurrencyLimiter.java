@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Limits the number of requests in flight to the server and adapts the limit to the observed round trip times
+ * (additive increase, multiplicative decrease). A round trip lasts until the response headers arrived, so reading
+ * a large or streamed body doesn't count as server latency. While requests are about as fast as the fastest
+ * recently seen and the limit is actually used, it grows by one per round trip; when they get slower than
+ * {@code tolerance} times that, or fail, it shrinks by a tenth, at most once per round trip so the requests that
+ * were already in flight don't shrink it again. Requests above the limit wait up to the queue timeout for a slot
+ * and then fail fast instead of piling up on an overloaded server. A request holds its slot until its response
+ * stream was read to the end or closed. A thread that holds a slot, e.g. while iterating a streamed result, gets
+ * a slot for nested requests without waiting, as it would otherwise wait for itself.
+ */
+public class ConcurrencyLimiter extends ClientFilter {
+    private static final double BACKOFF = 0.9;
+    // the fastest round trip is forgotten slowly so the limiter follows a server that got permanently slower
+    private static final int MIN_RTT_WINDOW = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long queueTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private final Map<Thread, Integer> holders = new HashMap<Thread, Integer>();
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samplesSinceMinRtt;
+    // incremented by each backoff, requests sent before the last one don't back off again
+    private long backoffs;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, long queueTimeoutMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) throw new IllegalArgumentException("Invalid limits " + minLimit + " to " + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final Thread holder = Thread.currentThread();
+        final long backoffsAtStart = acquire(request, holder);
+        final long start = nanoTime();
+        final ClientResponse response;
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            sample(nanoTime() - start, true, backoffsAtStart);
+            release(holder);
+            throw e;
+        }
+        sample(nanoTime() - start, response.getStatus() >= 500, backoffsAtStart);
+        final InputStream entity = response.getEntityInputStream();
+        if (entity == null) {
+            release(holder);
+        } else {
+            response.setEntityInputStream(new ReleasingInputStream(entity) {
+                protected void released() {
+                    release(holder);
+                }
+            });
+        }
+        return response;
+    }
+
+    /**
+     * the clock of the round trip times
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @return the number of backoffs so far
+     */
+    private long acquire(ClientRequest request, Thread holder) {
+        requests.incrementAndGet();
+        lock.lock();
+        try {
+            final Integer held = holders.get(holder);
+            if (held == null && inFlight >= (int) limit) {
+                queued.incrementAndGet();
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new ClientHandlerException("Concurrency limit of " + (int) limit + " requests reached, rejected " + request.getMethod() + " " + request.getURI());
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            }
+            inFlight++;
+            holders.put(holder, held == null ? 1 : held + 1);
+            return backoffs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting for the concurrency limit", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rttNanos, boolean failed, long backoffsAtStart) {
+        lock.lock();
+        try {
+            if (rttNanos < minRttNanos || ++samplesSinceMinRtt > MIN_RTT_WINDOW) {
+                minRttNanos = rttNanos;
+                samplesSinceMinRtt = 0;
+            }
+            if (failed || rttNanos > minRttNanos * tolerance) {
+                if (backoffsAtStart == backoffs) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    backoffs++;
+                }
+            } else if (inFlight >= (int) limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Thread holder) {
+        lock.lock();
+        try {
+            inFlight--;
+            final int held = holders.remove(holder);
+            if (held > 1) holders.put(holder, held - 1);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return requests that had to wait for a slot
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return requests that failed because no slot became free within the queue timeout
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConcurrencyLimiter[limit=%d, inFlight=%d, requests=%d, queued=%d, rejected=%d]", getLimit(), getInFlight(), getRequests(), getQueued(), getRejected());
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.client.apache.ApacheHttpClientHandler;
+
+/**
+ * Keeps up to the configured number of connections in total and per host open and reuses them for later requests,
+ * connections that were idle for longer than the keep-alive time are closed. The transport using the pooled
+ * connections is created with {@link #createClientHandler(int, int)}, the pool itself is added as a filter and bounds
+ * the number of connections leased at the same time. A lease starts when a request is sent and ends when its response
+ * stream was read to the end or closed, which returns the connection to the pool.
+ * Requests that find the pool exhausted wait up to the configured timeout for a connection to be returned.
+ */
+public class ConnectionPool extends ClientFilter {
+    private final int maxTotal;
+    private final int maxPerHost;
+    private final long waitTimeoutMillis;
+    private final long keepAliveMillis;
+    private final Semaphore total;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger peakLeased = new AtomicInteger();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong waitedFor = new AtomicLong();
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final MultiThreadedHttpConnectionManager connections = new MultiThreadedHttpConnectionManager();
+    private final IdleConnectionTimeoutThread evictor = new IdleConnectionTimeoutThread();
+
+    /**
+     * @param keepAliveMillis how long an idle connection is kept open for the next request
+     */
+    public ConnectionPool(int maxTotal, int maxPerHost, long waitTimeoutMillis, long keepAliveMillis) {
+        if (maxTotal < 1 || maxPerHost < 1) throw new IllegalArgumentException("Pool sizes must be positive, got " + maxTotal + " / " + maxPerHost);
+        if (keepAliveMillis < 1) throw new IllegalArgumentException("Keep-alive must be positive, got " + keepAliveMillis);
+        this.maxTotal = maxTotal;
+        this.maxPerHost = Math.min(maxPerHost, maxTotal);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.keepAliveMillis = keepAliveMillis;
+        this.total = new Semaphore(maxTotal, true);
+        final HttpConnectionManagerParams params = connections.getParams();
+        params.setMaxTotalConnections(maxTotal);
+        params.setDefaultMaxConnectionsPerHost(this.maxPerHost);
+        params.setStaleCheckingEnabled(true);
+        evictor.setConnectionTimeout(keepAliveMillis);
+        evictor.setTimeoutInterval(Math.max(100, keepAliveMillis / 2));
+        evictor.addConnectionManager(connections);
+        evictor.start();
+    }
+
+    /**
+     * @return the transport sending the requests over the connections of this pool
+     */
+    public ClientHandler createClientHandler(int connectTimeoutMillis, int readTimeoutMillis) {
+        final HttpConnectionManagerParams params = connections.getParams();
+        params.setConnectionTimeout(connectTimeoutMillis);
+        params.setSoTimeout(readTimeoutMillis);
+        return new ApacheHttpClientHandler(new HttpClient(connections));
+    }
+
+    /**
+     * closes all connections and stops evicting idle ones
+     */
+    public void close() {
+        evictor.shutdown();
+        connections.shutdown();
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final String host = hostOf(request);
+        final Semaphore hostPermits = hostPermits(host);
+        acquire(hostPermits, host);
+        final Lease lease = new Lease(hostPermits);
+        try {
+            final ClientResponse response = getNext().handle(request);
+            final InputStream entity = response.getEntityInputStream();
+            if (entity == null) {
+                lease.release();
+            } else {
+                response.setEntityInputStream(new ReleasingInputStream(entity) {
+                    protected void released() {
+                        lease.release();
+                    }
+                });
+            }
+            return response;
+        } catch (RuntimeException e) {
+            lease.release();
+            throw e;
+        }
+    }
+
+    private String hostOf(ClientRequest request) {
+        final URI uri = request.getURI();
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+
+    private Semaphore hostPermits(String host) {
+        Semaphore permits = hosts.get(host);
+        if (permits != null) return permits;
+        permits = new Semaphore(maxPerHost, true);
+        final Semaphore existing = hosts.putIfAbsent(host, permits);
+        return existing != null ? existing : permits;
+    }
+
+    private void acquire(Semaphore hostPermits, String host) {
+        final long start = System.nanoTime();
+        boolean waited = false;
+        try {
+            if (!hostPermits.tryAcquire()) {
+                waited = true;
+                if (!hostPermits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw timeout(host);
+                }
+            }
+            if (!total.tryAcquire()) {
+                waited = true;
+                final long remaining = waitTimeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (!total.tryAcquire(Math.max(0, remaining), TimeUnit.MILLISECONDS)) {
+                    hostPermits.release();
+                    throw timeout(host);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting for a connection to " + host, e);
+        } finally {
+            if (waited) {
+                waitedFor.incrementAndGet();
+                waitTimeNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        leases.incrementAndGet();
+        updatePeak(leased.incrementAndGet());
+    }
+
+    private ClientHandlerException timeout(String host) {
+        timeouts.incrementAndGet();
+        return new ClientHandlerException("Timeout waiting " + waitTimeoutMillis + " ms for a connection to " + host + ", " + leased.get() + " of " + maxTotal + " connections leased");
+    }
+
+    private void updatePeak(int current) {
+        int peak;
+        do {
+            peak = peakLeased.get();
+        } while (current > peak && !peakLeased.compareAndSet(peak, current));
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * @return connections currently in use by a request or an unconsumed response
+     */
+    public int getLeased() {
+        return leased.get();
+    }
+
+    /**
+     * @return the most connections that were leased at the same time
+     */
+    public int getPeakLeased() {
+        return peakLeased.get();
+    }
+
+    /**
+     * @return number of requests that had to wait for a connection
+     */
+    public long getWaitedFor() {
+        return waitedFor.get();
+    }
+
+    /**
+     * @return open connections, leased or idle
+     */
+    public int getOpen() {
+        return connections.getConnectionsInPool();
+    }
+
+    /**
+     * @return open connections waiting in the pool for the next request
+     */
+    public int getIdle() {
+        return Math.max(0, getOpen() - getLeased());
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTimeNanos.get());
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getLeases() {
+        return leases.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[leased=%d, idle=%d, peakLeased=%d, waitedFor=%d, timeouts=%d, leases=%d, max=%d, perHost=%d]",
+                getLeased(), getIdle(), getPeakLeased(), getWaitedFor(), getTimeouts(), getLeases(), maxTotal, maxPerHost);
+    }
+
+    private class Lease {
+        private final Semaphore hostPermits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(Semaphore hostPermits) {
+            this.hostPermits = hostPermits;
+        }
+
+        void release() {
+            if (!released.compareAndSet(false, true)) return;
+            leased.decrementAndGet();
+            total.release();
+            hostPermits.release();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Hedges GET requests: if an endpoint didn't answer within the configured percentile of its recent latencies,
+ * an identical second request is sent and the first response wins. The loser is cancelled, which stops it while
+ * it still waits for a connection; a request already on the wire can't be aborted, its response is closed as
+ * soon as it arrives so its connection goes back to the pool. Until an endpoint has enough latency samples
+ * its requests are not hedged. GET requests with a body, like gremlin scripts, may write and are never hedged.
+ */
+public class HedgingFilter extends ClientFilter {
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 50;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, LatencyTracker> endpoints = new ConcurrentHashMap<String, LatencyTracker>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    /**
+     * @param percentile of the recent latencies of an endpoint after which a request is hedged, e.g. 95
+     * @param minDelayMillis lower bound of the hedge delay, so fast endpoints are not hedged on every hiccup
+     */
+    public HedgingFilter(double percentile, long minDelayMillis) {
+        if (percentile <= 0 || percentile >= 100) throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percentile);
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "neo4j-rest-hedge-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        if (!"GET".equals(request.getMethod()) || request.getEntity() != null) return getNext().handle(request);
+        requests.incrementAndGet();
+        final LatencyTracker latency = latency(endpointOf(request.getURI()));
+        final long delay = latency.percentileNanos(percentile);
+        if (delay < 0) return new Attempt(request, latency).call();
+        try {
+            return hedged(request, latency, Math.max(delay, minDelayNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting for " + request.getURI(), e);
+        }
+    }
+
+    private ClientResponse hedged(ClientRequest request, LatencyTracker latency, long delayNanos) throws InterruptedException {
+        final CompletionService<ClientResponse> completion = new ExecutorCompletionService<ClientResponse>(executor);
+        final Attempt first = new Attempt(request, latency);
+        final Future<ClientResponse> firstResult = completion.submit(first);
+        Future<ClientResponse> done = completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+        if (done != null) return result(done);
+
+        hedges.incrementAndGet();
+        final Attempt second = new Attempt(request.clone(), latency);
+        final Future<ClientResponse> secondResult = completion.submit(second);
+        Future<ClientResponse> winner = null;
+        try {
+            done = completion.take();
+            final boolean firstWon = done == firstResult;
+            try {
+                final ClientResponse response = result(done);
+                winner = done;
+                if (!firstWon) hedgesWon.incrementAndGet();
+                return response;
+            } catch (RuntimeException e) {
+                // the other request may still succeed
+                final Future<ClientResponse> other = firstWon ? secondResult : firstResult;
+                final ClientResponse response = result(other);
+                winner = other;
+                if (firstWon) hedgesWon.incrementAndGet();
+                return response;
+            }
+        } finally {
+            if (winner != firstResult) abandon(first, firstResult);
+            if (winner != secondResult) abandon(second, secondResult);
+        }
+    }
+
+    private void abandon(Attempt attempt, Future<ClientResponse> result) {
+        result.cancel(true);
+        attempt.abandon();
+    }
+
+    private ClientResponse result(Future<ClientResponse> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ClientHandlerException) throw (ClientHandlerException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new ClientHandlerException(cause);
+        }
+    }
+
+    private LatencyTracker latency(String endpoint) {
+        LatencyTracker tracker = endpoints.get(endpoint);
+        if (tracker != null) return tracker;
+        tracker = new LatencyTracker(SAMPLES, MIN_SAMPLES);
+        final LatencyTracker existing = endpoints.putIfAbsent(endpoint, tracker);
+        return existing != null ? existing : tracker;
+    }
+
+    private String endpointOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * @return the latencies of the endpoint (scheme://host:port) or null if it didn't get a GET request yet
+     */
+    public LatencyTracker getLatency(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HedgingFilter[p%s, requests=%d, hedges=%d, won=%d]", percentile, getRequests(), getHedges(), getHedgesWon());
+    }
+
+    private class Attempt implements Callable<ClientResponse> {
+        private final ClientRequest request;
+        private final LatencyTracker latency;
+        private ClientResponse response;
+        private boolean abandoned;
+
+        Attempt(ClientRequest request, LatencyTracker latency) {
+            this.request = request;
+            this.latency = latency;
+        }
+
+        @Override
+        public ClientResponse call() {
+            final long start = System.nanoTime();
+            final ClientResponse response = getNext().handle(request);
+            latency.record(System.nanoTime() - start);
+            synchronized (this) {
+                if (abandoned) {
+                    response.close();
+                    return null;
+                }
+                this.response = response;
+            }
+            return response;
+        }
+
+        synchronized void abandon() {
+            abandoned = true;
+            if (response != null) response.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the most recent round trip times of one endpoint and derives percentiles from them. Percentiles are
+ * recalculated every few samples only, so reading them on every request is cheap.
+ */
+public class LatencyTracker {
+    private static final int RECALCULATE_EVERY = 32;
+
+    private final long[] samples;
+    private final int minSamples;
+    private int count;
+    private long total;
+    private long[] sorted = new long[0];
+    private long sortedAt = -1;
+
+    public LatencyTracker(int size, int minSamples) {
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+    }
+
+    public synchronized void record(long nanos) {
+        samples[(int) (total % samples.length)] = nanos;
+        total++;
+        if (count < samples.length) count++;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds below which the given percentage of recent requests finished,
+     * -1 if there are not yet enough samples
+     */
+    public long percentileNanos(double percentile) {
+        final long[] sorted = sortedSamples();
+        if (sorted.length < minSamples || sorted.length == 0) return -1;
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public long percentileMillis(double percentile) {
+        final long nanos = percentileNanos(percentile);
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private synchronized long[] sortedSamples() {
+        if (sortedAt < 0 || total - sortedAt >= RECALCULATE_EVERY || (count < RECALCULATE_EVERY && sorted.length != count)) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sortedAt = total;
+        }
+        return sorted;
+    }
+
+    public synchronized long getCount() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyTracker[count=%d, p50=%dms, p99=%dms]", getCount(), percentileMillis(50), percentileMillis(99));
+    }
+}
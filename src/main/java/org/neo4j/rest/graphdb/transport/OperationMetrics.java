@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the requests of one operation class, e.g. "node GET" or "cypher POST". Latencies are measured until
+ * the response headers arrived, in milliseconds with a resolution of 1/8 of their magnitude.
+ */
+public class OperationMetrics {
+    private final String operation;
+    private final long calls;
+    private final long errors;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"operation", "calls", "errors", "bytesIn", "bytesOut", "p50Millis", "p99Millis", "p999Millis", "maxMillis"})
+    public OperationMetrics(String operation, long calls, long errors, long bytesIn, long bytesOut, double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+        this.p999Millis = p999Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return requests which failed with an exception or a 5xx status
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return response body bytes read by the caller
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return request body bytes written
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: calls=%d, errors=%d, in=%d, out=%d, p50=%.2fms, p99=%.2fms, p999=%.2fms, max=%.2fms",
+                operation, calls, errors, bytesIn, bytesOut, p50Millis, p99Millis, p999Millis, maxMillis);
+    }
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Records count, errors, body bytes and a latency histogram per operation class, i.e. the kind of resource and the
+ * http method of a request. Recording doesn't lock: every operation class has a few stripes of counters and a
+ * thread always updates the same stripe, the stripes are only summed up for a snapshot.
+ */
+public class RequestMetrics extends ClientFilter implements RequestMetricsMXBean {
+    public enum Resource { NODE, RELATIONSHIP, PROPERTY, INDEX, CYPHER, BATCH, TRAVERSE, EXTENSION, OTHER }
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final int stripes;
+    private final AtomicReferenceArray<Recorder> recorders = new AtomicReferenceArray<Recorder>(Resource.values().length * (METHODS.length + 1));
+    private ObjectName objectName;
+
+    public RequestMetrics() {
+        int stripes = 1;
+        while (stripes < Math.min(Runtime.getRuntime().availableProcessors(), 16)) stripes <<= 1;
+        this.stripes = stripes;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final Recorder recorder = recorder(resourceOf(request.getURI().getRawPath()), methodIndex(request.getMethod()));
+        final int stripe = (int) Thread.currentThread().getId() & (stripes - 1);
+        if (request.getEntity() != null) {
+            request.setAdapter(new CountingAdapter(request.getAdapter(), recorder, stripe));
+        }
+        final long start = System.nanoTime();
+        final ClientResponse response;
+        try {
+            response = getNext().handle(request);
+        } catch (ClientHandlerException e) {
+            recorder.record(stripe, System.nanoTime() - start, true);
+            throw e;
+        } catch (RuntimeException e) {
+            recorder.record(stripe, System.nanoTime() - start, true);
+            throw e;
+        }
+        recorder.record(stripe, System.nanoTime() - start, response.getStatus() >= 500);
+        if (response.hasEntity()) {
+            response.setEntityInputStream(new CountingInputStream(response.getEntityInputStream(), recorder, stripe));
+        }
+        return response;
+    }
+
+    static Resource resourceOf(String path) {
+        if (path == null) return Resource.OTHER;
+        if (path.endsWith("/batch")) return Resource.BATCH;
+        if (path.endsWith("/cypher")) return Resource.CYPHER;
+        if (path.contains("/ext/")) return Resource.EXTENSION;
+        if (path.contains("/traverse/") || path.contains("/path")) return Resource.TRAVERSE;
+        if (path.contains("/index/")) return Resource.INDEX;
+        if (path.contains("/properties")) return Resource.PROPERTY;
+        if (path.contains("/relationship")) return Resource.RELATIONSHIP;
+        if (path.contains("/node")) return Resource.NODE;
+        return Resource.OTHER;
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) return i;
+        }
+        return METHODS.length;
+    }
+
+    private Recorder recorder(Resource resource, int method) {
+        final int index = resource.ordinal() * (METHODS.length + 1) + method;
+        Recorder recorder = recorders.get(index);
+        if (recorder == null) {
+            final String name = resource.name().toLowerCase() + " " + (method < METHODS.length ? METHODS[method] : "OTHER");
+            recorders.compareAndSet(index, null, new Recorder(name, stripes));
+            recorder = recorders.get(index);
+        }
+        return recorder;
+    }
+
+    /**
+     * @return the metrics of one operation class, or null if it wasn't called yet
+     */
+    public OperationMetrics getOperation(Resource resource, String method) {
+        final Recorder recorder = recorders.get(resource.ordinal() * (METHODS.length + 1) + methodIndex(method));
+        return recorder == null ? null : recorder.snapshot();
+    }
+
+    @Override
+    public List<OperationMetrics> getOperations() {
+        final List<OperationMetrics> result = new ArrayList<OperationMetrics>();
+        for (int i = 0; i < recorders.length(); i++) {
+            final Recorder recorder = recorders.get(i);
+            if (recorder != null) result.add(recorder.snapshot());
+        }
+        return result;
+    }
+
+    @Override
+    public long getCalls() {
+        long calls = 0;
+        for (OperationMetrics operation : getOperations()) calls += operation.getCalls();
+        return calls;
+    }
+
+    @Override
+    public long getErrors() {
+        long errors = 0;
+        for (OperationMetrics operation : getOperations()) errors += operation.getErrors();
+        return errors;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < recorders.length(); i++) {
+            recorders.set(i, null);
+        }
+    }
+
+    /**
+     * registers the metrics with the platform mbean server, failures are ignored as metrics are not essential
+     */
+    public synchronized void register(String uri) {
+        try {
+            final ObjectName name = new ObjectName("org.neo4j.rest:type=RequestMetrics,uri=" + ObjectName.quote(uri) + ",id=" + instances.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            // running without jmx access
+        }
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) return;
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (Exception e) {
+            // already gone
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics" + getOperations();
+    }
+
+    /**
+     * Log-linear histogram of microseconds with 8 buckets per power of two, and the counters, per stripe.
+     */
+    static class Recorder {
+        private static final int SUB_BUCKETS = 8;
+        private static final int MAX_EXPONENT = 40;
+        static final int BUCKETS = (MAX_EXPONENT - 1) * SUB_BUCKETS;
+        private static final int CALLS = BUCKETS, ERRORS = BUCKETS + 1, BYTES_IN = BUCKETS + 2, BYTES_OUT = BUCKETS + 3, MAX = BUCKETS + 4;
+
+        private final String name;
+        private final AtomicLongArray[] stripes;
+
+        Recorder(String name, int stripes) {
+            this.name = name;
+            this.stripes = new AtomicLongArray[stripes];
+            for (int i = 0; i < stripes; i++) {
+                this.stripes[i] = new AtomicLongArray(MAX + 1);
+            }
+        }
+
+        void record(int stripe, long nanos, boolean error) {
+            final AtomicLongArray counters = stripes[stripe];
+            final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            counters.incrementAndGet(bucket(micros));
+            counters.incrementAndGet(CALLS);
+            if (error) counters.incrementAndGet(ERRORS);
+            long max;
+            while ((max = counters.get(MAX)) < micros && !counters.compareAndSet(MAX, max, micros)) { }
+        }
+
+        void bytesIn(int stripe, long bytes) {
+            stripes[stripe].addAndGet(BYTES_IN, bytes);
+        }
+
+        void bytesOut(int stripe, long bytes) {
+            stripes[stripe].addAndGet(BYTES_OUT, bytes);
+        }
+
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) return (int) Math.max(micros, 0);
+            final int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+            if (exponent == MAX_EXPONENT) return BUCKETS - 1;
+            final int subBucket = (int) (micros >> (exponent - 3)) & (SUB_BUCKETS - 1);
+            return (exponent - 2) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return the highest value of the bucket in microseconds
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            final int exponent = bucket / SUB_BUCKETS + 2;
+            final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 3);
+            return lower + (1L << (exponent - 3)) - 1;
+        }
+
+        OperationMetrics snapshot() {
+            final long[] sum = new long[MAX + 1];
+            long max = 0;
+            for (AtomicLongArray counters : stripes) {
+                for (int i = 0; i < MAX; i++) {
+                    sum[i] += counters.get(i);
+                }
+                max = Math.max(max, counters.get(MAX));
+            }
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += sum[i];
+            return new OperationMetrics(name, sum[CALLS], sum[ERRORS], sum[BYTES_IN], sum[BYTES_OUT],
+                    percentile(sum, total, 0.5, max), percentile(sum, total, 0.99, max), percentile(sum, total, 0.999, max), max / 1000.0);
+        }
+
+        private static double percentile(long[] buckets, long total, double percentile, long max) {
+            if (total == 0) return 0;
+            final long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return Math.min(upperBound(i), max) / 1000.0;
+            }
+            return max / 1000.0;
+        }
+    }
+
+    private static class CountingAdapter extends AbstractClientRequestAdapter {
+        private final Recorder recorder;
+        private final int stripe;
+
+        CountingAdapter(ClientRequestAdapter adapter, Recorder recorder, int stripe) {
+            super(adapter);
+            this.recorder = recorder;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream out) throws IOException {
+            final OutputStream adapted = getAdapter() != null ? getAdapter().adapt(request, out) : out;
+            return new FilterOutputStream(adapted) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    recorder.bytesOut(stripe, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    recorder.bytesOut(stripe, len);
+                }
+            };
+        }
+    }
+
+    /**
+     * counts as the caller reads, bodies are read in buffer sized chunks so this is not per byte
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final Recorder recorder;
+        private final int stripe;
+
+        CountingInputStream(InputStream in, Recorder recorder, int stripe) {
+            super(in);
+            this.recorder = recorder;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) recorder.bytesIn(stripe, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) recorder.bytesIn(stripe, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            recorder.bytesIn(stripe, skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.transport;
+
+import java.net.URI;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * Keeps the parsed web resources of recently used request targets, so that requests to the same endpoint, like
+ * batch, cypher or index lookups, don't parse the uri and create the resource again. The cache is a fixed size
+ * table indexed by the hash of the target, a colliding target replaces the previous entry.
+ * Web resources are immutable, so entries are shared by all threads without locking.
+ */
+public class ResourceCache {
+    private final Client client;
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param size number of cached targets, rounded up to a power of two
+     */
+    public ResourceCache(Client client, int size) {
+        this.client = client;
+        int capacity = 1;
+        while (capacity < size) capacity <<= 1;
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public WebResource resource(String target) {
+        final int hash = target.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & mask;
+        final Entry entry = entries[index];
+        if (entry != null && entry.target.equals(target)) return entry.resource;
+        final WebResource resource = client.resource(URI.create(target));
+        entries[index] = new Entry(target, resource);
+        return resource;
+    }
+
+    private static class Entry {
+        final String target;
+        final WebResource resource;
+
+        Entry(String target, WebResource resource) {
+            this.target = target;
+            this.resource = resource;
+        }
+    }
+}
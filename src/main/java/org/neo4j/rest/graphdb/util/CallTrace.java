@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Splits the time of a query or batch call into serializing the request, the network round-trip, parsing the
+ * response and converting it into results, and logs calls slower than the
+ * {@link RestConfig#getSlowOperationThreshold()} of their facade to the "org.neo4j.rest.graphdb.slow" logger.
+ * The trace of a call lives in a thread local of the calling thread, work done on other threads is not included.
+ * A streamed query result takes its trace along with {@link #detach()}, adds the parse and convert time of its
+ * rows and finishes it when it was read to the end or closed. Until a facade with a threshold traced a call,
+ * tracing costs one volatile read per phase.
+ */
+public class CallTrace {
+    public enum Phase { SERIALIZE, NETWORK, PARSE, CONVERT }
+
+    public static final Logger LOG = Logger.getLogger("org.neo4j.rest.graphdb.slow");
+
+    // set by the first traced call, until then the phases don't look up the thread local
+    private static volatile boolean used;
+    private static final ThreadLocal<CallTrace> current = new ThreadLocal<CallTrace>();
+
+    private final String operation;
+    private final String target;
+    private final long thresholdNanos;
+    private final long start = System.nanoTime();
+    private final long[] phases = new long[Phase.values().length];
+    private long bytesOut;
+    private long bytesIn;
+
+    private CallTrace(String operation, String target, long thresholdNanos) {
+        this.operation = operation;
+        this.target = target;
+        this.thresholdNanos = thresholdNanos;
+    }
+
+    /**
+     * starts tracing a call on the current thread
+     * @param thresholdMillis the call is logged if it takes longer, 0 disables tracing
+     * @return the trace to {@link #finish()} or null if tracing is disabled or the thread already traces a call
+     */
+    public static CallTrace begin(String operation, String target, long thresholdMillis) {
+        if (thresholdMillis <= 0 || current.get() != null) return null;
+        final CallTrace trace = new CallTrace(operation, target, TimeUnit.MILLISECONDS.toNanos(thresholdMillis));
+        if (!used) used = true;
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the start time of a phase, 0 if the thread doesn't trace a call
+     */
+    public static long start() {
+        if (!used || current.get() == null) return 0;
+        return System.nanoTime();
+    }
+
+    public static void end(Phase phase, long start) {
+        if (start == 0) return;
+        final CallTrace trace = current.get();
+        if (trace != null) trace.phases[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    /**
+     * @return the stream counting the request bytes if the thread traces a call
+     */
+    public static OutputStream countOut(OutputStream stream) {
+        if (!used) return stream;
+        final CallTrace trace = current.get();
+        if (trace == null) return stream;
+        return new FilterOutputStream(stream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                trace.bytesOut++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                trace.bytesOut += len;
+            }
+        };
+    }
+
+    /**
+     * @return the stream counting the response bytes if the thread traces a call
+     */
+    public static InputStream countIn(InputStream stream) {
+        if (!used) return stream;
+        final CallTrace trace = current.get();
+        if (trace == null) return stream;
+        return trace.counted(stream);
+    }
+
+    /**
+     * @return the stream counting the response bytes into this trace
+     */
+    public InputStream counted(InputStream stream) {
+        final CallTrace trace = this;
+        return new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) trace.bytesIn++;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) trace.bytesIn += n;
+                return n;
+            }
+        };
+    }
+
+    public static void countIn(long bytes) {
+        if (!used) return;
+        final CallTrace trace = current.get();
+        if (trace != null) trace.bytesIn += bytes;
+    }
+
+    /**
+     * adds time spent in a phase outside of the traced call, e.g. while a streamed result is iterated
+     */
+    public void add(Phase phase, long nanos) {
+        phases[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * ends tracing on the current thread without finishing the trace, for work that continues after the call
+     * returned
+     */
+    public void detach() {
+        if (current.get() == this) current.remove();
+    }
+
+    /**
+     * ends the trace and logs it if the call was slow
+     */
+    public void finish() {
+        detach();
+        final long total = System.nanoTime() - start;
+        if (total < thresholdNanos || !LOG.isLoggable(Level.WARNING)) return;
+        LOG.warning(format(total));
+    }
+
+    String format(long total) {
+        // serialization streams into the connection, so it is part of the measured request time
+        final long[] phases = this.phases.clone();
+        phases[Phase.NETWORK.ordinal()] = Math.max(0, phases[Phase.NETWORK.ordinal()] - phases[Phase.SERIALIZE.ordinal()]);
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append(String.format("slow %s took %.1f ms, sent %d bytes, received %d bytes", operation, total / 1e6, bytesOut, bytesIn));
+        long other = total;
+        for (Phase phase : Phase.values()) {
+            final long nanos = phases[phase.ordinal()];
+            other -= nanos;
+            sb.append(String.format(", %s %.1f ms (%.0f%%)", phase.name().toLowerCase(), nanos / 1e6, 100.0 * nanos / total));
+        }
+        sb.append(String.format(", other %.1f ms (%.0f%%)", Math.max(other, 0) / 1e6, 100.0 * Math.max(other, 0) / total));
+        sb.append(": ").append(target);
+        return sb.toString();
+    }
+}
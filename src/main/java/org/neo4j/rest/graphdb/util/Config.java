@@ -26,7 +26,35 @@ public class Config {
     public static final String CONFIG_STREAM = CONFIG_PREFIX + "stream";
     public static final String CONFIG_BATCH_TRANSACTION = CONFIG_PREFIX+"batch_transaction";
     public static final String CONFIG_LOG_REQUESTS = CONFIG_PREFIX+"logging_filter";
+    public static final String STREAM_QUERY_RESULTS = "stream_query_results";
     public static final String WRITE_THREADS = "write_threads";
+    public static final String MAX_CONNECTIONS = "max_connections";
+    public static final String MAX_CONNECTIONS_PER_HOST = "max_connections_per_host";
+    public static final String CONNECTION_WAIT_TIMEOUT = "connection_wait_timeout";
+    public static final String CONNECTION_KEEP_ALIVE = "connection_keep_alive";
+    public static final String CACHE_SIZE = "cache_size";
+    public static final String FETCH_CHUNK_SIZE = "fetch_chunk_size";
+    public static final String BATCH_CHUNK_SIZE = "batch_chunk_size";
+    public static final String BATCH_CHUNK_BYTES = "batch_chunk_bytes";
+    public static final String CLUSTER_MAX_FAILURES = "cluster_max_failures";
+    public static final String CLUSTER_EJECT_TIMEOUT = "cluster_eject_timeout";
+    public static final String HEDGE_PERCENTILE = "hedge_percentile";
+    public static final String HEDGE_MIN_DELAY = "hedge_min_delay";
+    public static final String ADAPTIVE_LIMIT = "adaptive_limit";
+    public static final String ADAPTIVE_LIMIT_INITIAL = "adaptive_limit_initial";
+    public static final String ADAPTIVE_LIMIT_QUEUE_TIMEOUT = "adaptive_limit_queue_timeout";
+    public static final String GROUP_COMMIT = "group_commit";
+    public static final String GROUP_COMMIT_LINGER = "group_commit_linger";
+    public static final String GROUP_COMMIT_SIZE = "group_commit_size";
+    public static final String READ_COALESCE_WINDOW = "read_coalesce_window";
+    public static final String READ_COALESCE_SIZE = "read_coalesce_size";
+    public static final String METRICS = "metrics";
+    public static final String SLOW_OPERATION_THRESHOLD = "slow_operation_threshold";
+    public static final String WRITE_BEHIND = "write_behind";
+    public static final String WRITE_BEHIND_QUEUE_SIZE = "write_behind_queue_size";
+    public static final String ASYNC_COMMIT_BATCHES = "async_commit_batches";
+    public static final String BATCH_PARALLELISM = "batch_parallelism";
+    public static final String BATCH_SPILL_THRESHOLD = "batch_spill_threshold";
 
     public static int getConnectTimeout() {
         return getTimeout("connect_timeout", 30);
@@ -40,6 +68,10 @@ public class Config {
         return Boolean.parseBoolean(System.getProperty(CONFIG_STREAM,"true"));
     }
 
+    public static boolean streamQueryResults() {
+        return Boolean.parseBoolean(System.getProperty(CONFIG_PREFIX + STREAM_QUERY_RESULTS, "false"));
+    }
+
     public static boolean useBatchTransactions() {
         return System.getProperty(CONFIG_BATCH_TRANSACTION,"false").equalsIgnoreCase("true");
     }
@@ -55,4 +87,133 @@ public class Config {
     public static int getWriterThreads() {
         return Integer.parseInt(System.getProperty(CONFIG_PREFIX + WRITE_THREADS, "" + 10));
     }
+
+    public static int getMaxConnections() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + MAX_CONNECTIONS, "" + 200));
+    }
+
+    public static int getMaxConnectionsPerHost() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + MAX_CONNECTIONS_PER_HOST, "" + 50));
+    }
+
+    public static int getConnectionWaitTimeout() {
+        return getTimeout(CONNECTION_WAIT_TIMEOUT, 30);
+    }
+
+    public static int getConnectionKeepAlive() {
+        return getTimeout(CONNECTION_KEEP_ALIVE, 60);
+    }
+
+    public static int getEntityCacheSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + CACHE_SIZE, "" + 0));
+    }
+
+    public static int getFetchChunkSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + FETCH_CHUNK_SIZE, "" + 500));
+    }
+
+    public static int getBatchChunkSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + BATCH_CHUNK_SIZE, "" + 0));
+    }
+
+    public static long getBatchChunkBytes() {
+        return Long.parseLong(System.getProperty(CONFIG_PREFIX + BATCH_CHUNK_BYTES, "" + 0));
+    }
+
+    public static int getClusterMaxFailures() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + CLUSTER_MAX_FAILURES, "" + 3));
+    }
+
+    public static int getClusterEjectTimeout() {
+        return getTimeout(CLUSTER_EJECT_TIMEOUT, 10);
+    }
+
+    public static double getHedgePercentile() {
+        return Double.parseDouble(System.getProperty(CONFIG_PREFIX + HEDGE_PERCENTILE, "" + 0));
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public static long getHedgeMinDelay() {
+        return Long.parseLong(System.getProperty(CONFIG_PREFIX + HEDGE_MIN_DELAY, "" + 10));
+    }
+
+    public static boolean useAdaptiveLimit() {
+        return System.getProperty(CONFIG_PREFIX + ADAPTIVE_LIMIT, "false").equalsIgnoreCase("true");
+    }
+
+    public static int getAdaptiveLimitInitial() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + ADAPTIVE_LIMIT_INITIAL, "" + 10));
+    }
+
+    public static int getAdaptiveLimitQueueTimeout() {
+        return getTimeout(ADAPTIVE_LIMIT_QUEUE_TIMEOUT, 5);
+    }
+
+    public static boolean useGroupCommit() {
+        return System.getProperty(CONFIG_PREFIX + GROUP_COMMIT, "false").equalsIgnoreCase("true");
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public static long getGroupCommitLinger() {
+        return Long.parseLong(System.getProperty(CONFIG_PREFIX + GROUP_COMMIT_LINGER, "" + 5));
+    }
+
+    public static int getGroupCommitSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + GROUP_COMMIT_SIZE, "" + 100));
+    }
+
+    /**
+     * @return in milliseconds, 0 disables read coalescing
+     */
+    public static long getReadCoalesceWindow() {
+        return Long.parseLong(System.getProperty(CONFIG_PREFIX + READ_COALESCE_WINDOW, "" + 0));
+    }
+
+    public static int getReadCoalesceSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + READ_COALESCE_SIZE, "" + 100));
+    }
+
+    public static boolean useMetrics() {
+        return System.getProperty(CONFIG_PREFIX + METRICS, "false").equalsIgnoreCase("true");
+    }
+
+    /**
+     * @return in milliseconds, 0 disables the slow operation log
+     */
+    public static long getSlowOperationThreshold() {
+        return Long.parseLong(System.getProperty(CONFIG_PREFIX + SLOW_OPERATION_THRESHOLD, "" + 0));
+    }
+
+    public static boolean useWriteBehind() {
+        return System.getProperty(CONFIG_PREFIX + WRITE_BEHIND, "false").equalsIgnoreCase("true");
+    }
+
+    public static int getWriteBehindQueueSize() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + WRITE_BEHIND_QUEUE_SIZE, "" + 10000));
+    }
+
+    /**
+     * @return 0 executes batch transactions synchronously
+     */
+    public static int getAsyncCommitBatches() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + ASYNC_COMMIT_BATCHES, "" + 0));
+    }
+
+    /**
+     * @return 1 sends a batch as one request
+     */
+    public static int getBatchParallelism() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + BATCH_PARALLELISM, "" + 1));
+    }
+
+    /**
+     * @return 0 keeps all recorded operations of a batch on heap
+     */
+    public static int getBatchSpillThreshold() {
+        return Integer.parseInt(System.getProperty(CONFIG_PREFIX + BATCH_SPILL_THRESHOLD, "" + 0));
+    }
 }
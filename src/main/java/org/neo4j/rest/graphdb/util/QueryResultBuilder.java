@@ -114,6 +114,13 @@ public class QueryResultBuilder<T> implements QueryResult<T> {
     }
 
 
+    /**
+     * releases a result that is still read from the server, e.g. after iterating only part of it
+     */
+    public void close() {
+        closeIfNeeded();
+    }
+
     private void closeIfNeeded() {
         if (isClosableIterable && !isClosed) {
             if (result instanceof IndexHits) {
@@ -0,0 +1,633 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+/**
+ * Settings of one {@link org.neo4j.rest.graphdb.RestAPIFacade}, resolved once when it is created. The defaults
+ * are the system properties described in {@link Config}, so two facades in one JVM can be tuned differently:
+ * <pre>
+ * RestConfig config = RestConfig.builder().withReadTimeout(60000).withStreaming(false).build();
+ * RestAPI restAPI = new RestAPIFacade(uri, user, password, config);
+ * </pre>
+ */
+public class RestConfig {
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final boolean streaming;
+    private final boolean streamQueryResults;
+    private final boolean batchTransactions;
+    private final boolean loggingFilter;
+    private final int writeThreads;
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final int connectionWaitTimeout;
+    private final int connectionKeepAlive;
+    private final int entityCacheSize;
+    private final int fetchChunkSize;
+    private final int batchChunkSize;
+    private final long batchChunkBytes;
+    private final int clusterMaxFailures;
+    private final int clusterEjectTimeout;
+    private final double hedgePercentile;
+    private final long hedgeMinDelay;
+    private final boolean adaptiveLimit;
+    private final int adaptiveLimitInitial;
+    private final int adaptiveLimitQueueTimeout;
+    private final boolean groupCommit;
+    private final long groupCommitLinger;
+    private final int groupCommitSize;
+    private final long readCoalesceWindow;
+    private final int readCoalesceSize;
+    private final boolean metrics;
+    private final long slowOperationThreshold;
+    private final boolean writeBehind;
+    private final int writeBehindQueueSize;
+    private final int asyncCommitBatches;
+    private final int batchParallelism;
+    private final int batchSpillThreshold;
+
+    private RestConfig(Builder builder) {
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.streaming = builder.streaming;
+        this.streamQueryResults = builder.streamQueryResults;
+        this.batchTransactions = builder.batchTransactions;
+        this.loggingFilter = builder.loggingFilter;
+        this.writeThreads = builder.writeThreads;
+        this.maxConnections = builder.maxConnections;
+        this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+        this.connectionWaitTimeout = builder.connectionWaitTimeout;
+        this.connectionKeepAlive = builder.connectionKeepAlive;
+        this.entityCacheSize = builder.entityCacheSize;
+        this.fetchChunkSize = builder.fetchChunkSize;
+        this.batchChunkSize = builder.batchChunkSize;
+        this.batchChunkBytes = builder.batchChunkBytes;
+        this.clusterMaxFailures = builder.clusterMaxFailures;
+        this.clusterEjectTimeout = builder.clusterEjectTimeout;
+        this.hedgePercentile = builder.hedgePercentile;
+        this.hedgeMinDelay = builder.hedgeMinDelay;
+        this.adaptiveLimit = builder.adaptiveLimit;
+        this.adaptiveLimitInitial = builder.adaptiveLimitInitial;
+        this.adaptiveLimitQueueTimeout = builder.adaptiveLimitQueueTimeout;
+        this.groupCommit = builder.groupCommit;
+        this.groupCommitLinger = builder.groupCommitLinger;
+        this.groupCommitSize = builder.groupCommitSize;
+        this.readCoalesceWindow = builder.readCoalesceWindow;
+        this.readCoalesceSize = builder.readCoalesceSize;
+        this.metrics = builder.metrics;
+        this.slowOperationThreshold = builder.slowOperationThreshold;
+        this.writeBehind = builder.writeBehind;
+        this.writeBehindQueueSize = builder.writeBehindQueueSize;
+        this.asyncCommitBatches = builder.asyncCommitBatches;
+        this.batchParallelism = builder.batchParallelism;
+        this.batchSpillThreshold = builder.batchSpillThreshold;
+    }
+
+    /**
+     * @return the configuration given by the current system properties
+     */
+    public static RestConfig fromSystemProperties() {
+        return builder().build();
+    }
+
+    /**
+     * @return a builder starting with the values of the current system properties
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder starting with the values of this configuration
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return connect timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return read timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * @return stream responses instead of reading them into a string
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return cypher results are read row by row while they are iterated, callers have to iterate them to the end
+     * or close them to release the connection
+     */
+    public boolean isStreamQueryResults() {
+        return streamQueryResults;
+    }
+
+    /**
+     * @return beginTx() records the operations into a batch
+     */
+    public boolean useBatchTransactions() {
+        return batchTransactions;
+    }
+
+    /**
+     * @return log requests and responses with the Jersey logging filter
+     */
+    public boolean useLoggingFilter() {
+        return loggingFilter;
+    }
+
+    /**
+     * @return number of background writer threads
+     */
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * @return how long a request waits for a pooled connection, in milliseconds
+     */
+    public int getConnectionWaitTimeout() {
+        return connectionWaitTimeout;
+    }
+
+    /**
+     * @return how long an idle pooled connection is kept open, in milliseconds
+     */
+    public int getConnectionKeepAlive() {
+        return connectionKeepAlive;
+    }
+
+    /**
+     * @return number of cached entities, 0 disables the cache
+     */
+    public int getEntityCacheSize() {
+        return entityCacheSize;
+    }
+
+    public int getFetchChunkSize() {
+        return fetchChunkSize;
+    }
+
+    /**
+     * @return operations per batch chunk, 0 sends a batch in one request
+     */
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    /**
+     * @return approximate bytes per batch chunk, 0 sends a batch in one request
+     */
+    public long getBatchChunkBytes() {
+        return batchChunkBytes;
+    }
+
+    public int getClusterMaxFailures() {
+        return clusterMaxFailures;
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public int getClusterEjectTimeout() {
+        return clusterEjectTimeout;
+    }
+
+    /**
+     * @return 0 disables hedging
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public long getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public boolean useAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    public int getAdaptiveLimitInitial() {
+        return adaptiveLimitInitial;
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public int getAdaptiveLimitQueueTimeout() {
+        return adaptiveLimitQueueTimeout;
+    }
+
+    public boolean useGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * @return in milliseconds
+     */
+    public long getGroupCommitLinger() {
+        return groupCommitLinger;
+    }
+
+    public int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    /**
+     * @return in milliseconds, 0 disables read coalescing
+     */
+    public long getReadCoalesceWindow() {
+        return readCoalesceWindow;
+    }
+
+    public int getReadCoalesceSize() {
+        return readCoalesceSize;
+    }
+
+    public boolean useMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return in milliseconds, queries and batches taking longer are logged, 0 disables the slow operation log
+     */
+    public long getSlowOperationThreshold() {
+        return slowOperationThreshold;
+    }
+
+    /**
+     * @return single writes outside of transactions are executed by {@link #getWriteThreads()} background threads
+     */
+    public boolean useWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * @return writes queued across all writer threads before the callers are blocked
+     */
+    public int getWriteBehindQueueSize() {
+        return writeBehindQueueSize;
+    }
+
+    /**
+     * @return batches of finished transactions executed in the background at the same time, 0 executes them
+     * synchronously
+     */
+    public int getAsyncCommitBatches() {
+        return asyncCommitBatches;
+    }
+
+    /**
+     * @return concurrent sub-batches a batch of independent operations is split into, 1 sends it as one request
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * @return recorded operations of a batch kept on heap before older ones are spilled to a file, 0 disables it
+     */
+    public int getBatchSpillThreshold() {
+        return batchSpillThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "RestConfig{" +
+                "connectTimeout=" + connectTimeout +
+                ", readTimeout=" + readTimeout +
+                ", streaming=" + streaming +
+                ", streamQueryResults=" + streamQueryResults +
+                ", batchTransactions=" + batchTransactions +
+                ", loggingFilter=" + loggingFilter +
+                ", writeThreads=" + writeThreads +
+                ", maxConnections=" + maxConnections +
+                ", maxConnectionsPerHost=" + maxConnectionsPerHost +
+                ", connectionWaitTimeout=" + connectionWaitTimeout +
+                ", connectionKeepAlive=" + connectionKeepAlive +
+                ", entityCacheSize=" + entityCacheSize +
+                ", fetchChunkSize=" + fetchChunkSize +
+                ", batchChunkSize=" + batchChunkSize +
+                ", batchChunkBytes=" + batchChunkBytes +
+                ", clusterMaxFailures=" + clusterMaxFailures +
+                ", clusterEjectTimeout=" + clusterEjectTimeout +
+                ", hedgePercentile=" + hedgePercentile +
+                ", hedgeMinDelay=" + hedgeMinDelay +
+                ", adaptiveLimit=" + adaptiveLimit +
+                ", adaptiveLimitInitial=" + adaptiveLimitInitial +
+                ", adaptiveLimitQueueTimeout=" + adaptiveLimitQueueTimeout +
+                ", groupCommit=" + groupCommit +
+                ", groupCommitLinger=" + groupCommitLinger +
+                ", groupCommitSize=" + groupCommitSize +
+                ", readCoalesceWindow=" + readCoalesceWindow +
+                ", readCoalesceSize=" + readCoalesceSize +
+                ", metrics=" + metrics +
+                ", slowOperationThreshold=" + slowOperationThreshold +
+                ", writeBehind=" + writeBehind +
+                ", writeBehindQueueSize=" + writeBehindQueueSize +
+                ", asyncCommitBatches=" + asyncCommitBatches +
+                ", batchParallelism=" + batchParallelism +
+                ", batchSpillThreshold=" + batchSpillThreshold +
+                '}';
+    }
+
+    public static class Builder {
+        private int connectTimeout = Config.getConnectTimeout();
+        private int readTimeout = Config.getReadTimeout();
+        private boolean streaming = Config.streamingIsEnabled();
+        private boolean streamQueryResults = Config.streamQueryResults();
+        private boolean batchTransactions = Config.useBatchTransactions();
+        private boolean loggingFilter = Config.useLoggingFilter();
+        private int writeThreads = Config.getWriterThreads();
+        private int maxConnections = Config.getMaxConnections();
+        private int maxConnectionsPerHost = Config.getMaxConnectionsPerHost();
+        private int connectionWaitTimeout = Config.getConnectionWaitTimeout();
+        private int connectionKeepAlive = Config.getConnectionKeepAlive();
+        private int entityCacheSize = Config.getEntityCacheSize();
+        private int fetchChunkSize = Config.getFetchChunkSize();
+        private int batchChunkSize = Config.getBatchChunkSize();
+        private long batchChunkBytes = Config.getBatchChunkBytes();
+        private int clusterMaxFailures = Config.getClusterMaxFailures();
+        private int clusterEjectTimeout = Config.getClusterEjectTimeout();
+        private double hedgePercentile = Config.getHedgePercentile();
+        private long hedgeMinDelay = Config.getHedgeMinDelay();
+        private boolean adaptiveLimit = Config.useAdaptiveLimit();
+        private int adaptiveLimitInitial = Config.getAdaptiveLimitInitial();
+        private int adaptiveLimitQueueTimeout = Config.getAdaptiveLimitQueueTimeout();
+        private boolean groupCommit = Config.useGroupCommit();
+        private long groupCommitLinger = Config.getGroupCommitLinger();
+        private int groupCommitSize = Config.getGroupCommitSize();
+        private long readCoalesceWindow = Config.getReadCoalesceWindow();
+        private int readCoalesceSize = Config.getReadCoalesceSize();
+        private boolean metrics = Config.useMetrics();
+        private long slowOperationThreshold = Config.getSlowOperationThreshold();
+        private boolean writeBehind = Config.useWriteBehind();
+        private int writeBehindQueueSize = Config.getWriteBehindQueueSize();
+        private int asyncCommitBatches = Config.getAsyncCommitBatches();
+        private int batchParallelism = Config.getBatchParallelism();
+        private int batchSpillThreshold = Config.getBatchSpillThreshold();
+
+        private Builder() {
+        }
+
+        private Builder(RestConfig config) {
+            this.connectTimeout = config.connectTimeout;
+            this.readTimeout = config.readTimeout;
+            this.streaming = config.streaming;
+            this.streamQueryResults = config.streamQueryResults;
+            this.batchTransactions = config.batchTransactions;
+            this.loggingFilter = config.loggingFilter;
+            this.writeThreads = config.writeThreads;
+            this.maxConnections = config.maxConnections;
+            this.maxConnectionsPerHost = config.maxConnectionsPerHost;
+            this.connectionWaitTimeout = config.connectionWaitTimeout;
+            this.connectionKeepAlive = config.connectionKeepAlive;
+            this.entityCacheSize = config.entityCacheSize;
+            this.fetchChunkSize = config.fetchChunkSize;
+            this.batchChunkSize = config.batchChunkSize;
+            this.batchChunkBytes = config.batchChunkBytes;
+            this.clusterMaxFailures = config.clusterMaxFailures;
+            this.clusterEjectTimeout = config.clusterEjectTimeout;
+            this.hedgePercentile = config.hedgePercentile;
+            this.hedgeMinDelay = config.hedgeMinDelay;
+            this.adaptiveLimit = config.adaptiveLimit;
+            this.adaptiveLimitInitial = config.adaptiveLimitInitial;
+            this.adaptiveLimitQueueTimeout = config.adaptiveLimitQueueTimeout;
+            this.groupCommit = config.groupCommit;
+            this.groupCommitLinger = config.groupCommitLinger;
+            this.groupCommitSize = config.groupCommitSize;
+            this.readCoalesceWindow = config.readCoalesceWindow;
+            this.readCoalesceSize = config.readCoalesceSize;
+            this.metrics = config.metrics;
+            this.slowOperationThreshold = config.slowOperationThreshold;
+            this.writeBehind = config.writeBehind;
+            this.writeBehindQueueSize = config.writeBehindQueueSize;
+            this.asyncCommitBatches = config.asyncCommitBatches;
+            this.batchParallelism = config.batchParallelism;
+            this.batchSpillThreshold = config.batchSpillThreshold;
+        }
+
+        public Builder withConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder withReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public Builder withStreaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        public Builder withStreamQueryResults(boolean streamQueryResults) {
+            this.streamQueryResults = streamQueryResults;
+            return this;
+        }
+
+        public Builder withBatchTransactions(boolean batchTransactions) {
+            this.batchTransactions = batchTransactions;
+            return this;
+        }
+
+        public Builder withLoggingFilter(boolean loggingFilter) {
+            this.loggingFilter = loggingFilter;
+            return this;
+        }
+
+        public Builder withWriteThreads(int writeThreads) {
+            this.writeThreads = writeThreads;
+            return this;
+        }
+
+        public Builder withMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder withMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        public Builder withConnectionWaitTimeout(int connectionWaitTimeout) {
+            this.connectionWaitTimeout = connectionWaitTimeout;
+            return this;
+        }
+
+        public Builder withConnectionKeepAlive(int connectionKeepAlive) {
+            this.connectionKeepAlive = connectionKeepAlive;
+            return this;
+        }
+
+        public Builder withEntityCacheSize(int entityCacheSize) {
+            this.entityCacheSize = entityCacheSize;
+            return this;
+        }
+
+        public Builder withFetchChunkSize(int fetchChunkSize) {
+            this.fetchChunkSize = fetchChunkSize;
+            return this;
+        }
+
+        public Builder withBatchChunkSize(int batchChunkSize) {
+            this.batchChunkSize = batchChunkSize;
+            return this;
+        }
+
+        public Builder withBatchChunkBytes(long batchChunkBytes) {
+            this.batchChunkBytes = batchChunkBytes;
+            return this;
+        }
+
+        public Builder withClusterMaxFailures(int clusterMaxFailures) {
+            this.clusterMaxFailures = clusterMaxFailures;
+            return this;
+        }
+
+        public Builder withClusterEjectTimeout(int clusterEjectTimeout) {
+            this.clusterEjectTimeout = clusterEjectTimeout;
+            return this;
+        }
+
+        public Builder withHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        public Builder withHedgeMinDelay(long hedgeMinDelay) {
+            this.hedgeMinDelay = hedgeMinDelay;
+            return this;
+        }
+
+        public Builder withAdaptiveLimit(boolean adaptiveLimit) {
+            this.adaptiveLimit = adaptiveLimit;
+            return this;
+        }
+
+        public Builder withAdaptiveLimitInitial(int adaptiveLimitInitial) {
+            this.adaptiveLimitInitial = adaptiveLimitInitial;
+            return this;
+        }
+
+        public Builder withAdaptiveLimitQueueTimeout(int adaptiveLimitQueueTimeout) {
+            this.adaptiveLimitQueueTimeout = adaptiveLimitQueueTimeout;
+            return this;
+        }
+
+        public Builder withGroupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+            return this;
+        }
+
+        public Builder withGroupCommitLinger(long groupCommitLinger) {
+            this.groupCommitLinger = groupCommitLinger;
+            return this;
+        }
+
+        public Builder withGroupCommitSize(int groupCommitSize) {
+            this.groupCommitSize = groupCommitSize;
+            return this;
+        }
+
+        public Builder withReadCoalesceWindow(long readCoalesceWindow) {
+            this.readCoalesceWindow = readCoalesceWindow;
+            return this;
+        }
+
+        public Builder withReadCoalesceSize(int readCoalesceSize) {
+            this.readCoalesceSize = readCoalesceSize;
+            return this;
+        }
+
+        public Builder withMetrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withSlowOperationThreshold(long slowOperationThreshold) {
+            this.slowOperationThreshold = slowOperationThreshold;
+            return this;
+        }
+
+        public Builder withWriteBehind(boolean writeBehind) {
+            this.writeBehind = writeBehind;
+            return this;
+        }
+
+        public Builder withWriteBehindQueueSize(int writeBehindQueueSize) {
+            this.writeBehindQueueSize = writeBehindQueueSize;
+            return this;
+        }
+
+        public Builder withAsyncCommitBatches(int asyncCommitBatches) {
+            this.asyncCommitBatches = asyncCommitBatches;
+            return this;
+        }
+
+        public Builder withBatchParallelism(int batchParallelism) {
+            this.batchParallelism = batchParallelism;
+            return this;
+        }
+
+        public Builder withBatchSpillThreshold(int batchSpillThreshold) {
+            this.batchSpillThreshold = batchSpillThreshold;
+            return this;
+        }
+
+        public RestConfig build() {
+            if (maxConnections < 1 || maxConnectionsPerHost < 1) throw new IllegalArgumentException("Connection limits must be positive, got " + maxConnections + "/" + maxConnectionsPerHost);
+            if (connectionKeepAlive < 1) throw new IllegalArgumentException("Connection keep-alive must be positive, got " + connectionKeepAlive);
+            if (slowOperationThreshold < 0) throw new IllegalArgumentException("Slow operation threshold must not be negative, got " + slowOperationThreshold);
+            if (writeThreads < 1) throw new IllegalArgumentException("Write threads must be positive, got " + writeThreads);
+            if (writeBehindQueueSize < writeThreads) throw new IllegalArgumentException("Write-behind queue size must be at least the number of write threads, got " + writeBehindQueueSize);
+            if (asyncCommitBatches < 0) throw new IllegalArgumentException("Async commit batches must not be negative, got " + asyncCommitBatches);
+            if (batchParallelism < 1) throw new IllegalArgumentException("Batch parallelism must be positive, got " + batchParallelism);
+            if (batchSpillThreshold < 0) throw new IllegalArgumentException("Batch spill threshold must not be negative, got " + batchSpillThreshold);
+            if (fetchChunkSize < 1) throw new IllegalArgumentException("Fetch chunk size must be positive, got " + fetchChunkSize);
+            return new RestConfig(this);
+        }
+    }
+}
@@ -25,6 +25,7 @@ package org.neo4j.rest.graphdb.util;
  */
 
 import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
@@ -58,6 +59,41 @@ public class StreamJsonHelper {
         }
     }
 
+    public static JsonParser createJsonParser( InputStream stream ) {
+        try {
+            return OBJECT_MAPPER.getJsonFactory().createJsonParser(stream);
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Error creating JSON parser", e);
+        }
+    }
+
+    public static JsonParser createJsonParser( String json ) {
+        try {
+            return OBJECT_MAPPER.getJsonFactory().createJsonParser(json);
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Error creating JSON parser", e);
+        }
+    }
+
+    public static JsonGenerator createJsonGenerator( OutputStream stream ) {
+        try {
+            return OBJECT_MAPPER.getJsonFactory().createJsonGenerator(stream);
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Error creating JSON generator", e);
+        }
+    }
+
+    /**
+     * reads the value the parser is currently positioned at (or the next one) including all its children
+     */
+    public static Object readValue( JsonParser parser ) {
+        try {
+            return OBJECT_MAPPER.readValue(parser, Object.class);
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Error reading JSON value", e);
+        }
+    }
+
     private static void close(InputStream stream) {
         try {
             stream.close();
@@ -74,13 +110,20 @@ public class StreamJsonHelper {
 */
     }
 
-    // todo boolean close
     public static void writeJsonTo( Object data , OutputStream stream) {
+        writeJsonTo(data, stream, true);
+    }
+
+    /**
+     * @param close if false the stream is only flushed, e.g. when it belongs to a connection
+     */
+    public static void writeJsonTo( Object data , OutputStream stream, boolean close) {
         try {
             JsonGenerator generator = OBJECT_MAPPER.getJsonFactory()
                     .createJsonGenerator(stream);
             OBJECT_MAPPER.writeValue(generator, data);
-            stream.close();
+            generator.flush();
+            if (close) stream.close();
         } catch ( IOException e ) {
             throw new RuntimeException( e );
         }
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Request entity that writes its data as compact JSON directly to the connection instead of first
+ * rendering it into a String.
+ */
+public class StreamingJsonEntity implements StreamingOutput {
+    private final Object data;
+
+    public StreamingJsonEntity(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        final long start = CallTrace.start();
+        StreamJsonHelper.writeJsonTo(data, CallTrace.countOut(stream), false);
+        CallTrace.end(CallTrace.Phase.SERIALIZE, start);
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return JsonHelper.createJsonFrom(data);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+/**
+ * Percent-encodes index keys and values for request paths, giving the same result as
+ * {@code URLEncoder.encode(value, "utf-8").replaceAll("\\+", "%20")} without the intermediate strings.
+ * Values which need no encoding are returned as they are.
+ */
+public class UriEncoder {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] SAFE = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) SAFE[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) SAFE[c] = true;
+        for (char c = '0'; c <= '9'; c++) SAFE[c] = true;
+        SAFE['.'] = SAFE['-'] = SAFE['*'] = SAFE['_'] = true;
+    }
+
+    public static String encode(Object value) {
+        if (value == null) return "";
+        final String s = value.toString();
+        final int length = s.length();
+        int i = 0;
+        while (i < length && isSafe(s.charAt(i))) i++;
+        if (i == length) return s;
+
+        final StringBuilder sb = new StringBuilder(length + 16);
+        sb.append(s, 0, i);
+        while (i < length) {
+            final char c = s.charAt(i);
+            if (isSafe(c)) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+                i++;
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                codePoint = '?'; // unpaired surrogate, replaced like the utf-8 encoder does
+            }
+            appendUtf8(sb, codePoint);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSafe(char c) {
+        return c < 128 && SAFE[c];
+    }
+
+    private static void appendUtf8(StringBuilder sb, int codePoint) {
+        if (codePoint < 0x80) {
+            appendByte(sb, codePoint);
+        } else if (codePoint < 0x800) {
+            appendByte(sb, 0xC0 | (codePoint >> 6));
+            appendByte(sb, 0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            appendByte(sb, 0xE0 | (codePoint >> 12));
+            appendByte(sb, 0x80 | ((codePoint >> 6) & 0x3F));
+            appendByte(sb, 0x80 | (codePoint & 0x3F));
+        } else {
+            appendByte(sb, 0xF0 | (codePoint >> 18));
+            appendByte(sb, 0x80 | ((codePoint >> 12) & 0x3F));
+            appendByte(sb, 0x80 | ((codePoint >> 6) & 0x3F));
+            appendByte(sb, 0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private static void appendByte(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
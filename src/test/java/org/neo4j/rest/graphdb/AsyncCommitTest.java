@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.rest.graphdb.batch.AsyncCommitter;
+import org.neo4j.rest.graphdb.batch.BatchCallback;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.util.RestConfig;
+
+public class AsyncCommitTest extends RestTestBase {
+    private static final int BATCHES = 20;
+    private static final int NODES = 10;
+    private static final DynamicRelationshipType KNOWS = DynamicRelationshipType.withName("KNOWS");
+
+    private RestAPIFacade restAPI;
+
+    public AsyncCommitTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withAsyncCommitBatches(2).build());
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testBatchesAreCommittedInTheBackground() throws Exception {
+        final List<RestNode> nodes = new ArrayList<RestNode>();
+        for (int b = 0; b < BATCHES; b++) {
+            final BatchTransaction tx = BatchTransaction.begin(restAPI);
+            try {
+                for (int n = 0; n < NODES; n++) {
+                    nodes.add(restAPI.createNode(map("value", b * NODES + n)));
+                }
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+        }
+        restAPI.flush();
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(i, loadRealNode(nodes.get(i)).getProperty("value"));
+        }
+        final AsyncCommitter committer = restAPI.getAsyncCommitter();
+        assertNotNull(committer);
+        assertEquals(BATCHES, committer.getBatches());
+        assertEquals(BATCHES * NODES, committer.getOperations());
+        assertEquals(0, committer.getInFlight());
+    }
+
+    @Test
+    public void testBatchUsesEntitiesOfABatchInFlight() throws Exception {
+        final RestNode start;
+        final RestNode end;
+        BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            start = restAPI.createNode(map("name", "start"));
+            end = restAPI.createNode(map("name", "end"));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        tx = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.createRelationship(start, end, KNOWS, map("since", 2013));
+            restAPI.setPropertyOnEntity(start, "updated", true);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        tx.await();
+        final Node realStart = loadRealNode(start);
+        assertEquals(true, realStart.getProperty("updated"));
+        final Relationship relationship = realStart.getSingleRelationship(KNOWS, Direction.OUTGOING);
+        assertEquals(2013, relationship.getProperty("since"));
+        assertEquals(end.getId(), relationship.getEndNode().getId());
+    }
+
+    @Test
+    public void testExecuteBatchWaitsForTheResult() throws Exception {
+        final RestNode node = restAPI.executeBatch(new BatchCallback<RestNode>() {
+            public RestNode recordBatch(RestAPI batchRestApi) {
+                return batchRestApi.createNode(map("name", "waited"));
+            }
+        });
+        assertFalse(node.getUri().startsWith("{"));
+        assertEquals("waited", node.getProperty("name"));
+    }
+
+    @Test
+    public void testFailureIsReportedByAwait() throws Exception {
+        final RestNode node = restAPI.createNode(null);
+        node.delete();
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.setPropertyOnEntity(node, "name", "deleted");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        try {
+            tx.await();
+            fail("batch on a deleted node should fail");
+        } catch (RuntimeException expected) {
+        }
+        restAPI.flush();
+    }
+
+    @Test
+    public void testFailureIsNotReportedByALaterCommit() throws Exception {
+        final RestNode node = restAPI.createNode(null);
+        node.delete();
+        final BatchTransaction failing = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.setPropertyOnEntity(node, "name", "deleted");
+            failing.success();
+        } finally {
+            failing.finish();
+        }
+        while (restAPI.getAsyncCommitter().getInFlight() > 0) {
+            Thread.sleep(10);
+        }
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        final RestNode queued;
+        try {
+            queued = restAPI.createNode(map("name", "queued"));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        tx.await();
+        assertEquals("queued", loadRealNode(queued).getProperty("name"));
+        try {
+            restAPI.flush();
+            fail("flush should report the failed batch");
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    @Test
+    public void testUnsuccessfulTransactionIsNotSent() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.createNode(null);
+            tx.failure();
+        } finally {
+            tx.finish();
+        }
+        tx.await();
+        assertEquals(0, restAPI.getAsyncCommitter().getBatches());
+        assertTrue(tx.isFinished());
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.util.DefaultConverter;
+
+public class AsyncRestAPITest extends RestTestBase {
+    private RestAPI restAPI;
+    private AsyncRestAPI asyncRestAPI;
+
+    public AsyncRestAPITest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = ((RestGraphDatabase) getRestGraphDb()).getRestAPI();
+        asyncRestAPI = new AsyncRestAPIFacade(restAPI);
+    }
+
+    @After
+    public void closeAsync() {
+        asyncRestAPI.close();
+    }
+
+    @Test
+    public void testManyRequestsInFlight() throws Exception {
+        final List<Future<RestNode>> created = new ArrayList<Future<RestNode>>();
+        for (int i = 0; i < 100; i++) {
+            created.add(asyncRestAPI.createNode(map("index", i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            final RestNode node = created.get(i).get();
+            assertEquals(i, asyncRestAPI.getNodeById(node.getId()).get().getProperty("index"));
+        }
+    }
+
+    @Test
+    public void testQueryReturnsSameResultAsSyncApi() throws Exception {
+        final Node node = restAPI.createNode(map("name", "async"));
+        final String statement = "start n=node({id}) return n";
+        final Node result = asyncRestAPI.query(statement, map("id", node.getId()), new DefaultConverter()).get().to(Node.class).single();
+        assertEquals(node, result);
+        assertEquals(IteratorUtil.asCollection(restAPI.query(statement, map("id", node.getId()), new DefaultConverter())).size(), 1);
+    }
+
+    @Test
+    public void testCallbackReceivesFailure() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Future<RestNode> future = asyncRestAPI.submit(new AsyncRestAPI.AsyncOperation<RestNode>() {
+            public RestNode execute(RestAPI restAPI) {
+                return restAPI.getNodeById(Integer.MAX_VALUE);
+            }
+        }, new AsyncCallback<RestNode>() {
+            public void onSuccess(RestNode result) {
+                latch.countDown();
+            }
+
+            public void onFailure(Throwable error) {
+                failure.set(error);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof NotFoundException);
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NotFoundException);
+        }
+    }
+}
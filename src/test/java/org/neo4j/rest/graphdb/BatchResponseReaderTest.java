@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.batch.BatchResponseReader;
+import org.neo4j.rest.graphdb.batch.RestOperations;
+import org.neo4j.rest.graphdb.converter.RestResultConverter;
+
+public class BatchResponseReaderTest {
+    private static final String BASE = "http://localhost:7474/db/data";
+
+    private final RestResultConverter bodyConverter = new RestResultConverter() {
+        public Object convertFromRepresentation(RequestResult value) {
+            return value.toEntity();
+        }
+    };
+    private final Updated updated = new Updated();
+    private RestOperations operations;
+
+    @Before
+    public void setUp() {
+        operations = new RestOperations();
+        operations.record(RestOperations.RestOperation.Methods.POST, "node", null, BASE);
+        operations.record(RestOperations.RestOperation.Methods.PUT, "node/1/properties/name", "value", BASE);
+        operations.addToRestOperation(1, updated, bodyConverter);
+    }
+
+    @Test
+    public void testEntriesAreConvertedFromTheirParsedBody() throws Exception {
+        final Map<Long, String> locations = new HashMap<Long, String>();
+        new BatchResponseReader(operations.getRecordedRequests(), locations, null).read(result(
+                "[{\"id\":1,\"location\":\"" + BASE + "/node/7\",\"body\":{\"self\":\"" + BASE + "/node/7\",\"data\":{\"name\":\"n\"}},\"from\":\"/node\"}," +
+                "{\"id\":2,\"from\":\"/node/1/properties/name\"}]"));
+        assertEquals(1, updated.updates);
+        final Map<?, ?> body = (Map<?, ?>) updated.value;
+        assertEquals(BASE + "/node/7", body.get("self"));
+        assertEquals("n", ((Map<?, ?>) body.get("data")).get("name"));
+        assertEquals(BASE + "/node/7", locations.get(1L));
+        assertFalse(locations.containsKey(2L));
+    }
+
+    @Test
+    public void testEntityIsUpdatedBeforeTheRestOfTheResponseIsRead() throws Exception {
+        try {
+            new BatchResponseReader(operations.getRecordedRequests(), null, null).read(result(
+                    "[{\"id\":1,\"location\":\"" + BASE + "/node/7\",\"body\":{\"self\":\"" + BASE + "/node/7\"}},{\"id\":"));
+            fail("truncated response should fail");
+        } catch (RuntimeException expected) {
+            assertEquals(1, updated.updates);
+        }
+    }
+
+    @Test(expected = RestResultException.class)
+    public void testFailedOperationFailsTheBatch() throws Exception {
+        new BatchResponseReader(operations.getRecordedRequests(), null, null).read(result(
+                "[{\"id\":1,\"location\":\"" + BASE + "/node/7\",\"body\":{\"self\":\"" + BASE + "/node/7\"}}," +
+                "{\"id\":2,\"status\":404,\"body\":{\"message\":\"Node not found\"}}]"));
+    }
+
+    @Test(expected = RestResultException.class)
+    public void testFailedBatch() throws Exception {
+        new BatchResponseReader(operations.getRecordedRequests(), null, null).read(result(
+                "{\"message\":\"Node not found\",\"exception\":\"BatchOperationFailedException\"}"));
+    }
+
+    @Test
+    public void testParsedBodyIsUsedAsItIs() throws Exception {
+        final Map<String, Object> body = new HashMap<String, Object>();
+        body.put("name", "n");
+        final RequestResult result = RequestResult.fromBody(null, body);
+        assertTrue(result.toEntity() == body);
+        assertEquals("{\"name\":\"n\"}", result.getText());
+        assertNull(RequestResult.fromBody(null, null).toEntity());
+    }
+
+    private static RequestResult result(String json) {
+        return new RequestResult(200, null, json);
+    }
+
+    private static class Updated implements UpdatableRestResult<Object> {
+        int updates;
+        Object value;
+
+        public void updateFrom(Object newValue, RestAPI restApi) {
+            updates++;
+            value = newValue;
+        }
+    }
+}
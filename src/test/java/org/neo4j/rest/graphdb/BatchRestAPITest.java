@@ -40,6 +40,7 @@ import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.entity.RestRelationship;
 import org.neo4j.rest.graphdb.index.RestIndex;
 import org.neo4j.rest.graphdb.query.RestCypherQueryEngine;
+import org.neo4j.rest.graphdb.util.RestConfig;
 import org.neo4j.rest.graphdb.util.TestHelper;
 
 public class BatchRestAPITest extends RestTestBase {
@@ -92,6 +93,31 @@ public class BatchRestAPITest extends RestTestBase {
     }
 
 
+    @Test
+    public void testChunkedBatchResolvesReferencesToEarlierChunks(){
+        final RestAPIFacade chunked = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withBatchChunkSize(10).build());
+        try {
+            TestBatchResult response = chunked.executeBatch(new BatchCallback<TestBatchResult>() {
+                @Override
+                public TestBatchResult recordBatch(RestAPI batchRestApi) {
+                    TestBatchResult result=new TestBatchResult();
+                    result.n1=batchRestApi.createNode(map("name", "node0"));
+                    for (int i=1;i<=25;i++) {
+                        result.n2=batchRestApi.createNode(map("name", "node"+i));
+                    }
+                    result.rel = batchRestApi.createRelationship(result.n1, result.n2, RELATIONSHIP_TYPE, map("since", 2013));
+                    return result;
+                }
+            });
+            assertEquals("node0", response.n1.getProperty("name"));
+            assertEquals("node25", response.n2.getProperty("name"));
+            assertEquals(response.n2, response.rel.getEndNode());
+            assertEquals(2013, response.rel.getProperty("since"));
+        } finally {
+            chunked.close();
+        }
+    }
+
     @Test
     public void testCreateNodeUniquely() {
         final RestIndex<Node> index = restAPI.createIndex(Node.class, "unique-node", LuceneIndexImplementation.EXACT_CONFIG);
@@ -34,6 +34,7 @@ import org.neo4j.rest.graphdb.entity.RestRelationship;
 import org.neo4j.rest.graphdb.index.RestIndex;
 import org.neo4j.rest.graphdb.transaction.NullTransaction;
 import org.neo4j.rest.graphdb.util.Config;
+import org.neo4j.rest.graphdb.util.RestConfig;
 import org.neo4j.rest.graphdb.util.TestHelper;
 
 import static org.junit.Assert.*;
@@ -51,25 +52,45 @@ public class BatchRestAPITransactionTest extends RestTestBase {
 
     @Before
     public void init() {
-        System.setProperty(Config.CONFIG_BATCH_TRANSACTION,"true");
-        this.restAPI = ((RestGraphDatabase) getRestGraphDb()).getRestAPI();
+        this.restAPI = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withBatchTransactions(true).build());
     }
 
     @Test
     public void testDisableBatchTransactions() throws Exception {
-        System.setProperty(Config.CONFIG_BATCH_TRANSACTION,"false");
-        Transaction tx = restAPI.beginTx();
-        tx.failure();tx.finish();
-        assertTrue(tx instanceof NullTransaction);
+        final RestAPI restAPI = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withBatchTransactions(false).build());
+        try {
+            Transaction tx = restAPI.beginTx();
+            tx.failure();tx.finish();
+            assertTrue(tx instanceof NullTransaction);
+        } finally {
+            restAPI.close();
+        }
     }
     @Test
     public void testEnableBatchTransactions() throws Exception {
-        System.setProperty(Config.CONFIG_BATCH_TRANSACTION,"true");
         Transaction tx = restAPI.beginTx();
         tx.failure();tx.finish();
         assertTrue(tx instanceof BatchTransaction);
     }
 
+    @Test
+    public void testBatchTransactionsFromSystemProperty() throws Exception {
+        System.setProperty(Config.CONFIG_BATCH_TRANSACTION,"true");
+        final RestAPI restAPI;
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_BATCH_TRANSACTION);
+        }
+        try {
+            Transaction tx = restAPI.beginTx();
+            tx.failure();tx.finish();
+            assertTrue("resolved when the facade was created", tx instanceof BatchTransaction);
+        } finally {
+            restAPI.close();
+        }
+    }
+
     @Test
     public void testCreateNode() {
         final Transaction tx = restAPI.beginTx();
@@ -297,5 +318,6 @@ public class BatchRestAPITransactionTest extends RestTestBase {
         if (restAPI!=null) {
             restAPI.close();
         }
+        super.tearDown();
     }
 }
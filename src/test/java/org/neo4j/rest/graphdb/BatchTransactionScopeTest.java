@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.rest.graphdb.entity.RestNode;
+
+public class BatchTransactionScopeTest extends RestTestBase {
+    private static final int THREADS = 20;
+
+    private RestAPIFacade restAPI;
+    private RestAPIFacade other;
+    private ExecutorService executor;
+
+    public BatchTransactionScopeTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = new RestAPIFacade(url + "/db/data");
+        other = new RestAPIFacade(url + "/db/data");
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void close() {
+        executor.shutdownNow();
+        restAPI.close();
+        other.close();
+    }
+
+    @Test
+    public void testTransactionOnlyRecordsItsFacade() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            final RestNode recorded = restAPI.createNode(map("name", "recorded"));
+            assertTrue(recorded.getUri().startsWith("{"));
+            final RestNode direct = other.createNode(map("name", "direct"));
+            assertEquals("direct", loadRealNode(direct).getProperty("name"));
+            assertNull(BatchTransaction.current(other));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void testClosingAFacadeKeepsTransactionsOfOthers() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            new RestAPIFacade(url + "/db/data").close();
+            assertSame(tx, BatchTransaction.current(restAPI));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void testSuspendedTransactionIsResumedAndFinishedOnOtherThreads() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI).suspend();
+        assertNull(BatchTransaction.current(restAPI));
+        final RestNode node = executor.submit(new Callable<RestNode>() {
+            public RestNode call() {
+                tx.resume();
+                try {
+                    return restAPI.createNode(map("name", "resumed"));
+                } finally {
+                    tx.suspend();
+                }
+            }
+        }).get(10, TimeUnit.SECONDS);
+        tx.success();
+        executor.submit(new Runnable() {
+            public void run() {
+                tx.finish();
+            }
+        }).get(10, TimeUnit.SECONDS);
+        assertTrue(tx.isFinished());
+        assertEquals("resumed", loadRealNode(node).getProperty("name"));
+    }
+
+    @Test
+    public void testFinishedOnAnotherThreadIsNoLongerCurrent() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        final RestNode node = restAPI.createNode(map("name", "handed over"));
+        tx.success();
+        executor.submit(new Runnable() {
+            public void run() {
+                tx.finish();
+            }
+        }).get(10, TimeUnit.SECONDS);
+        assertNull(BatchTransaction.current(restAPI));
+        assertEquals("handed over", loadRealNode(node).getProperty("name"));
+    }
+
+    @Test
+    public void testDetachedTransactionRecordsThroughItsApi() throws Exception {
+        final BatchTransaction tx = BatchTransaction.beginDetached(restAPI);
+        final Node node = tx.getBatchRestAPI().createNode(map("name", "detached"));
+        assertNull(BatchTransaction.current(restAPI));
+        tx.success();
+        tx.finish();
+        assertEquals("detached", loadRealNode(node).getProperty("name"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedStaticAccessors() throws Exception {
+        assertNull(BatchTransaction.current());
+        assertNull(BatchTransaction.getRestApi());
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        assertSame(tx, BatchTransaction.current());
+        assertSame(tx.getBatchRestAPI(), BatchTransaction.getRestApi());
+        BatchTransaction.shutdown();
+        assertNull(BatchTransaction.current());
+        assertNull(BatchTransaction.current(restAPI));
+        tx.finish();
+    }
+
+    @Test
+    public void testConcurrentTransactions() throws Exception {
+        final int existing = countExistingNodes();
+        final AtomicInteger created = new AtomicInteger();
+        final Future<?>[] futures = new Future<?>[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            futures[i] = executor.submit(new Callable<Void>() {
+                public Void call() {
+                    final BatchTransaction tx = BatchTransaction.begin(restAPI);
+                    try {
+                        restAPI.createNode(map("index", index));
+                        restAPI.createNode(map("index", index));
+                        tx.success();
+                    } finally {
+                        tx.finish();
+                    }
+                    created.addAndGet(2);
+                    return null;
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(THREADS * 2, created.get());
+        assertEquals(existing + THREADS * 2, countExistingNodes());
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+
+public class BulkFetchTest extends RestTestBase {
+    private static final int NODES = 2000;
+
+    private RestAPIFacade restAPI;
+
+    public BulkFetchTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = new RestAPIFacade(url + "/db/data");
+        restAPI.setFetchChunkSize(100);
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testGetNodesByIdsKeepsOrderAndDuplicates() {
+        final RestNode first = restAPI.createNode(map("name", "first"));
+        final RestNode second = restAPI.createNode(map("name", "second"));
+        final List<RestNode> nodes = restAPI.getNodesByIds(Arrays.asList(second.getId(), first.getId(), second.getId()));
+        assertEquals(3, nodes.size());
+        assertEquals("second", nodes.get(0).getProperty("name"));
+        assertEquals("first", nodes.get(1).getProperty("name"));
+        assertEquals(second, nodes.get(2));
+    }
+
+    @Test
+    public void testGetRelationshipsByIds() {
+        final RestNode start = restAPI.createNode(map("name", "start"));
+        final RestNode end = restAPI.createNode(map("name", "end"));
+        final RestRelationship relationship = restAPI.createRelationship(start, end, Type.TEST, map("weight", 1));
+        final List<RestRelationship> relationships = restAPI.getRelationshipsByIds(Arrays.asList(relationship.getId()));
+        assertEquals(1, relationships.size());
+        assertEquals(1, relationships.get(0).getProperty("weight"));
+        assertEquals(end, relationships.get(0).getEndNode());
+    }
+
+    @Test
+    public void testMissingNodeFailsFetch() {
+        final RestNode node = restAPI.createNode(map());
+        final long missing = Long.MAX_VALUE / 2;
+        try {
+            restAPI.getNodesByIds(Arrays.asList(node.getId(), missing));
+            fail("the whole fetch fails if one of the nodes is missing");
+        } catch (NotFoundException e) {
+            assertEquals("node " + missing, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFetchesManyNodesInChunks() {
+        final List<Long> ids = new ArrayList<Long>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            ids.add(restAPI.createNode(map("index", i)).getId());
+        }
+        final List<RestNode> nodes = restAPI.getNodesByIds(ids);
+        assertEquals(NODES, nodes.size());
+        for (int i = 0; i < NODES; i++) {
+            assertEquals(ids.get(i).longValue(), nodes.get(i).getId());
+            assertEquals(i, nodes.get(i).getProperty("index"));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.query.RestGremlinQueryEngine;
+import org.neo4j.rest.graphdb.transport.ClusterRouter;
+
+/**
+ * two independent servers stand in for the cluster members, their reference nodes tell which one answered a read
+ */
+public class ClusterRouterTest {
+    private static final String FIRST = "http://localhost:7480/db/data";
+    private static final String SECOND = "http://localhost:7481/db/data";
+    private static final String UNREACHABLE = "http://localhost:7489/db/data";
+
+    private static LocalTestServer first;
+    private static LocalTestServer second;
+    private RestAPIFacade restAPI;
+
+    @BeforeClass
+    public static void startServers() {
+        first = startServer("neo4j-cluster-7480.properties", FIRST);
+        second = startServer("neo4j-cluster-7481.properties", SECOND);
+    }
+
+    private static LocalTestServer startServer(String propertiesFile, String uri) {
+        final LocalTestServer server = new LocalTestServer().withPropertiesFile(propertiesFile);
+        server.start();
+        final GraphDatabaseService graph = server.getGraphDatabase();
+        final Transaction tx = graph.beginTx();
+        try {
+            graph.getReferenceNode().setProperty("member", uri);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        return server;
+    }
+
+    @AfterClass
+    public static void stopServers() {
+        first.stop();
+        second.stop();
+    }
+
+    @After
+    public void close() {
+        if (restAPI != null) restAPI.close();
+    }
+
+    @Test
+    public void testReadsAreSpreadAcrossMembers() {
+        restAPI = new RestAPIFacade(asList(FIRST, SECOND), FIRST, null, null);
+        final Set<Object> answeredBy = new HashSet<Object>();
+        for (int i = 0; i < 10; i++) {
+            answeredBy.add(restAPI.getNodeById(0).getProperty("member"));
+        }
+        assertEquals(new HashSet<Object>(asList(FIRST, SECOND)), answeredBy);
+    }
+
+    @Test
+    public void testWritesGoToMaster() {
+        restAPI = new RestAPIFacade(asList(FIRST, SECOND), SECOND, null, null);
+        final RestNode node = restAPI.createNode(map("name", "written"));
+        assertEquals("written", second.getGraphDatabase().getNodeById(node.getId()).getProperty("name"));
+        node.setProperty("name", "updated");
+        assertEquals("updated", second.getGraphDatabase().getNodeById(node.getId()).getProperty("name"));
+    }
+
+    @Test
+    public void testGremlinScriptsGoToMaster() {
+        restAPI = new RestAPIFacade(asList(FIRST, SECOND), SECOND, null, null);
+        final RestGremlinQueryEngine queryEngine = new RestGremlinQueryEngine(restAPI);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(SECOND, queryEngine.query("g.v(0).member", null).to(String.class).single());
+        }
+    }
+
+    @Test
+    public void testFirstMemberTakesWritesWithoutHaMaster() {
+        restAPI = new RestAPIFacade(asList(FIRST, SECOND), null, null, null);
+        assertEquals(FIRST, restAPI.getClusterRouter().getMaster());
+    }
+
+    @Test
+    public void testFailingMemberIsEjected() {
+        restAPI = new RestAPIFacade(asList(UNREACHABLE, FIRST), FIRST, null, null);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(FIRST, restAPI.getNodeById(0).getProperty("member"));
+        }
+        final ClusterRouter.Member unreachable = restAPI.getClusterRouter().getMembers().get(0);
+        assertEquals(1, unreachable.getEjections());
+        assertTrue(unreachable.getRequests() < 10);
+        assertFalse(unreachable.toString().contains("available=true"));
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.transport.ConcurrencyLimiter;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+
+/**
+ * runs the limiter against a stub server on a manual clock, a round trip lasts from sending the request until
+ * the stub returns the response, the slot is held until the response stream is closed
+ */
+public class ConcurrencyLimiterTest {
+    private static final int INITIAL_LIMIT = 4;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private ManualClockLimiter limiter;
+    private int status = 200;
+    private long latency = FAST;
+    private volatile CyclicBarrier barrier;
+
+    @Before
+    public void init() {
+        limiter = new ManualClockLimiter();
+        new Client(new ClientHandler() {
+            public ClientResponse handle(ClientRequest request) {
+                final CyclicBarrier barrier = ConcurrencyLimiterTest.this.barrier;
+                if (barrier == null) {
+                    limiter.now += latency;
+                } else {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new ClientHandlerException(e);
+                    }
+                }
+                return new ClientResponse(status, new InBoundHeaders(), new ByteArrayInputStream("{}".getBytes()), null);
+            }
+        }).addFilter(limiter);
+    }
+
+    @Test
+    public void testSlotIsHeldUntilTheResponseIsClosed() throws Exception {
+        final ClientResponse response = send();
+        assertEquals(1, limiter.getInFlight());
+        response.getEntityInputStream().close();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testReadingTheBodyDoesNotCountAsLatency() throws Exception {
+        roundTrip(1, FAST);
+        for (int request = 0; request < 10; request++) {
+            final ClientResponse response = send();
+            limiter.now += SLOW;
+            response.getEntityInputStream().close();
+        }
+        assertEquals(INITIAL_LIMIT, limiter.getLimit());
+    }
+
+    @Test
+    public void testBacksOffOncePerRoundTrip() throws Exception {
+        roundTrip(1, FAST);
+        // the stub answers all requests at once when they all arrived
+        barrier = new CyclicBarrier(INITIAL_LIMIT, new Runnable() {
+            public void run() {
+                limiter.now += SLOW;
+            }
+        });
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < INITIAL_LIMIT; i++) {
+            final Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        send().getEntityInputStream().close();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((int) (INITIAL_LIMIT * 0.9), limiter.getLimit());
+        barrier = null;
+        roundTrip(1, SLOW);
+        roundTrip(1, SLOW);
+        assertEquals((int) (INITIAL_LIMIT * 0.9 * 0.9 * 0.9), limiter.getLimit());
+    }
+
+    @Test
+    public void testNestedRequestsDoNotWaitForTheirOwnSlots() throws Exception {
+        final List<ClientResponse> open = new ArrayList<ClientResponse>();
+        for (int i = 0; i < INITIAL_LIMIT + 1; i++) {
+            open.add(send());
+        }
+        assertEquals(INITIAL_LIMIT + 1, limiter.getInFlight());
+        assertEquals(0, limiter.getRejected());
+        for (ClientResponse response : open) {
+            response.getEntityInputStream().close();
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsWhileSaturatedAndFast() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            roundTrip(limiter.getLimit(), FAST);
+        }
+        assertTrue(limiter + " should have grown", limiter.getLimit() > INITIAL_LIMIT);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitShrinksWhenRequestsGetSlower() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            roundTrip(limiter.getLimit(), FAST);
+        }
+        final int grown = limiter.getLimit();
+        for (int request = 0; request < 10; request++) {
+            roundTrip(1, SLOW);
+        }
+        assertTrue(limiter + " should have shrunk below " + grown, limiter.getLimit() < grown);
+    }
+
+    @Test
+    public void testLimitShrinksOnServerErrors() throws Exception {
+        status = 503;
+        for (int request = 0; request < 10; request++) {
+            roundTrip(1, FAST);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testRequestsAboveTheLimitAreRejected() throws Exception {
+        final List<ClientResponse> open = new ArrayList<ClientResponse>();
+        final Thread other = new Thread() {
+            public void run() {
+                for (int i = 0; i < INITIAL_LIMIT; i++) {
+                    open.add(send());
+                }
+            }
+        };
+        other.start();
+        other.join();
+        try {
+            send();
+            fail("request above the limit should be rejected");
+        } catch (ClientHandlerException expected) {
+        }
+        assertEquals(1, limiter.getRejected());
+        for (ClientResponse response : open) {
+            response.getEntityInputStream().close();
+        }
+        send().getEntityInputStream().close();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private void roundTrip(int concurrent, long latencyNanos) throws IOException {
+        latency = latencyNanos;
+        final List<ClientResponse> open = new ArrayList<ClientResponse>();
+        for (int i = 0; i < concurrent; i++) {
+            open.add(send());
+        }
+        for (ClientResponse response : open) {
+            response.getEntityInputStream().close();
+        }
+    }
+
+    private ClientResponse send() {
+        return limiter.handle(ClientRequest.create().build(URI.create("http://localhost:7474/db/data/node/0"), "GET"));
+    }
+
+    private static class ManualClockLimiter extends ConcurrencyLimiter {
+        private volatile long now;
+
+        ManualClockLimiter() {
+            super(INITIAL_LIMIT, 1, 50, 2.0, 0);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.transport.ConnectionPool;
+import org.neo4j.rest.graphdb.util.RestConfig;
+
+public class ConnectionPoolLoadTest extends RestTestBase {
+    private static final int THREADS = 50;
+    private static final int REQUESTS_PER_THREAD = 20;
+    private static final int POOL_SIZE = 2;
+    private static final int CONNECTIONS_PER_HOST = 10;
+    private static final int KEEP_ALIVE = 200;
+
+    private RestAPIFacade restAPI;
+    private RestAPIFacade pooled;
+    private RestAPIFacade smallPool;
+    private long nodeId;
+
+    public ConnectionPoolLoadTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = (RestAPIFacade) ((RestGraphDatabase) getRestGraphDb()).getRestAPI();
+        nodeId = restAPI.getReferenceNode().getId();
+        pooled = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder()
+                .withMaxConnectionsPerHost(CONNECTIONS_PER_HOST).withConnectionKeepAlive(KEEP_ALIVE).build());
+        smallPool = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder()
+                .withMaxConnections(POOL_SIZE).withMaxConnectionsPerHost(POOL_SIZE).withConnectionWaitTimeout(1000).build());
+    }
+
+    @After
+    public void close() {
+        pooled.close();
+        smallPool.close();
+    }
+
+    @Test
+    public void testConcurrentRequestsReturnTheirConnections() throws Exception {
+        final AtomicLong errors = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        for (int request = 0; request < REQUESTS_PER_THREAD; request++) {
+                            try {
+                                pooled.getNodeById(nodeId);
+                            } catch (RuntimeException e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        final ConnectionPool pool = pool(pooled);
+        assertEquals(0, errors.get());
+        assertEquals(0, pool.getLeased());
+        assertEquals(0, pool.getTimeouts());
+        assertTrue(pool.getLeases() >= THREADS * REQUESTS_PER_THREAD);
+        // more threads than connections, the requests were sent over the pooled connections
+        assertTrue(pool.getOpen() <= CONNECTIONS_PER_HOST);
+        assertEquals(pool.getOpen(), pool.getIdle());
+    }
+
+    @Test
+    public void testIdleConnectionsAreClosedAfterTheKeepAlive() throws Exception {
+        final ConnectionPool pool = pool(pooled);
+        pooled.getNodeById(nodeId);
+        pooled.getNodeById(nodeId);
+        assertEquals(1, pool.getOpen());
+        assertEquals(1, pool.getIdle());
+        final long deadline = System.currentTimeMillis() + 50 * KEEP_ALIVE;
+        while (pool.getOpen() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(KEEP_ALIVE / 4);
+        }
+        assertEquals(0, pool.getOpen());
+        assertEquals(nodeId, pooled.getNodeById(nodeId).getId());
+    }
+
+    @Test
+    public void testDroppedResultsReturnTheirConnections() throws Exception {
+        final RestNode node = smallPool.getNodeById(nodeId);
+        for (int i = 0; i < POOL_SIZE * 5; i++) {
+            try {
+                smallPool.getNodeById(Long.MAX_VALUE);
+                fail("node should not exist");
+            } catch (NotFoundException expected) {
+                // response not read
+            }
+            try {
+                smallPool.traverse(node, Collections.<String, Object>singletonMap("order", "no_such_order"));
+                fail("traversal should fail");
+            } catch (RuntimeException expected) {
+                // response not read
+            }
+            smallPool.isAutoIndexingEnabled(Node.class);
+            smallPool.query("start n=node({id}) return n", Collections.<String, Object>singletonMap("id", nodeId));
+        }
+        final ConnectionPool pool = pool(smallPool);
+        assertEquals(0, pool.getLeased());
+        assertEquals(0, pool.getTimeouts());
+        assertEquals(nodeId, smallPool.getNodeById(nodeId).getId());
+    }
+
+    private ConnectionPool pool(RestAPIFacade facade) {
+        return ((ExecutingRestRequest) facade.getDirect().getRestRequest()).getConnectionPool();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.rest.graphdb.batch.BatchCallback;
+import org.neo4j.rest.graphdb.batch.GroupCommitter;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+import org.neo4j.rest.graphdb.util.Config;
+
+public class GroupCommitTest extends RestTestBase {
+    private static final int THREADS = 20;
+    private static final int WRITES = 10;
+
+    private RestAPIFacade restAPI;
+
+    public GroupCommitTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        System.setProperty(Config.CONFIG_PREFIX + Config.GROUP_COMMIT, "true");
+        System.setProperty(Config.CONFIG_PREFIX + Config.GROUP_COMMIT_LINGER, "20");
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.GROUP_COMMIT);
+            System.clearProperty(Config.CONFIG_PREFIX + Config.GROUP_COMMIT_LINGER);
+        }
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testConcurrentWritesShareBatches() throws Exception {
+        final Map<RestNode, Integer> created = new ConcurrentHashMap<RestNode, Integer>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int w = 0; w < WRITES; w++) {
+                            final int value = thread * WRITES + w;
+                            created.put(restAPI.createNode(singletonMap("value", (Object) value)), value);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(THREADS * WRITES, created.size());
+        for (Map.Entry<RestNode, Integer> entry : created.entrySet()) {
+            final Node node = loadRealNode(entry.getKey());
+            assertEquals(entry.getValue(), node.getProperty("value"));
+        }
+        final GroupCommitter groupCommitter = restAPI.getGroupCommitter();
+        assertNotNull(groupCommitter);
+        assertEquals(THREADS * WRITES, groupCommitter.getOperations());
+        assertTrue(groupCommitter + " should have grouped writes", groupCommitter.getGroups() < groupCommitter.getOperations());
+    }
+
+    @Test
+    public void testRelationshipAndPropertyWritesAreGrouped() throws Exception {
+        final RestNode start = restAPI.createNode(null);
+        final RestNode end = restAPI.createNode(null);
+        final RestRelationship relationship = restAPI.createRelationship(start, end, DynamicRelationshipType.withName("KNOWS"), null);
+        restAPI.setPropertyOnEntity(relationship, "since", 2013);
+        assertTrue(relationship.getId() >= 0);
+        assertEquals(2013, loadRealNode(start).getSingleRelationship(DynamicRelationshipType.withName("KNOWS"), Direction.OUTGOING).getProperty("since"));
+        assertEquals(4, restAPI.getGroupCommitter().getOperations());
+    }
+
+    @Test
+    public void testRejectedWriteDoesNotBlockLaterWrites() throws Exception {
+        try {
+            restAPI.getGroupCommitter().execute(new BatchCallback<Object>() {
+                public Object recordBatch(RestAPI batchRestApi) {
+                    throw new IllegalArgumentException("rejected");
+                }
+            });
+            fail("write should have been rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("rejected", expected.getMessage());
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                restAPI.createNode(singletonMap("value", (Object) 1));
+                done.countDown();
+            }
+        }.start();
+        assertTrue("write after a rejected one should complete", done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWritesInTransactionAreNotGrouped() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.createNode(null);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals(0, restAPI.getGroupCommitter().getOperations());
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.transport.HedgingFilter;
+import org.neo4j.rest.graphdb.util.Config;
+
+public class HedgingFilterTest extends RestTestBase {
+    private static final int REQUESTS = 300;
+
+    private RestAPIFacade restAPI;
+    private ExecutingRestRequest request;
+
+    public HedgingFilterTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        // hedge every request slower than the median to get plenty of hedges
+        System.setProperty(Config.CONFIG_PREFIX + Config.HEDGE_PERCENTILE, "50");
+        System.setProperty(Config.CONFIG_PREFIX + Config.HEDGE_MIN_DELAY, "0");
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.HEDGE_PERCENTILE);
+            System.clearProperty(Config.CONFIG_PREFIX + Config.HEDGE_MIN_DELAY);
+        }
+        request = (ExecutingRestRequest) restAPI.getDirect().getRestRequest();
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testSlowReadsAreHedged() throws Exception {
+        final RestNode node = restAPI.createNode(map("name", "hedged"));
+        for (int i = 0; i < REQUESTS; i++) {
+            assertEquals("hedged", restAPI.getNodeById(node.getId()).getProperty("name"));
+        }
+        final HedgingFilter hedging = request.getHedging();
+        assertNotNull(hedging);
+        assertEquals(REQUESTS, hedging.getRequests());
+        assertTrue(hedging.getHedges() > 0);
+        assertTrue(hedging.getHedgesWon() <= hedging.getHedges());
+        Thread.sleep(500);
+        assertEquals(0, request.getConnectionPool().getLeased());
+    }
+
+    @Test
+    public void testWritesAreNotHedged() {
+        for (int i = 0; i < 100; i++) {
+            restAPI.createNode(map("name", "node" + i));
+        }
+        assertEquals(0, request.getHedging().getRequests());
+    }
+
+    @Test
+    public void testGetsWithBodyAreNotHedged() {
+        for (int i = 0; i < 100; i++) {
+            request.get("ext/GremlinPlugin/graphdb/execute_script", map("script", "g.v(0)")).close();
+        }
+        assertEquals(0, request.getHedging().getRequests());
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.batch.OperationLog;
+import org.neo4j.rest.graphdb.batch.RestOperations;
+import org.neo4j.rest.graphdb.converter.RestResultConverter;
+
+public class OperationLogTest {
+    private static final String BASE = "http://localhost:7474/db/data";
+    private static final int THRESHOLD = 3;
+    private static final int OPERATIONS = 10;
+
+    private final RestResultConverter converter = new RestResultConverter() {
+        public Object convertFromRepresentation(RequestResult value) {
+            return value.toEntity();
+        }
+    };
+    private final Object entity = new Object();
+    private RestOperations operations;
+    private OperationLog log;
+
+    @Before
+    public void setUp() {
+        operations = new RestOperations(new AtomicLong(), THRESHOLD);
+        for (int i = 0; i < OPERATIONS; i++) {
+            operations.record(RestOperations.RestOperation.Methods.POST, "node", map("index", i), BASE);
+            if (i == 0) operations.addToRestOperation(1, entity, converter);
+        }
+        log = (OperationLog) operations.getRecordedRequests();
+    }
+
+    @After
+    public void tearDown() {
+        operations.close();
+    }
+
+    @Test
+    public void testOperationsAreIteratedInRecordedOrder() throws Exception {
+        assertTrue(operations.isSpilled());
+        assertEquals(OPERATIONS, log.size());
+        long batchId = 1;
+        for (RestOperations.RestOperation operation : log.values()) {
+            assertEquals(batchId, operation.getBatchId());
+            assertEquals(RestOperations.RestOperation.Methods.POST, operation.getMethod());
+            assertEquals("node", operation.getUri());
+            assertEquals(BASE, operation.getBaseUri());
+            assertEquals(((int) batchId) - 1, ((Map<?, ?>) operation.getData()).get("index"));
+            batchId++;
+        }
+        assertEquals(OPERATIONS + 1, batchId);
+    }
+
+    @Test
+    public void testOnlyOperationsWithEntitiesStayOnHeap() throws Exception {
+        assertSame(entity, log.get(1L).getEntity());
+        assertNull(log.get(1L).getData());
+        assertNull(log.get(2L));
+        assertEquals(OPERATIONS - 1, ((Map<?, ?>) log.get((long) OPERATIONS).getData()).get("index"));
+        final RestOperations.RestOperation first = log.values().iterator().next();
+        assertSame(entity, first.getEntity());
+        assertSame(converter, first.getResultConverter());
+        assertEquals(0, ((Map<?, ?>) first.getData()).get("index"));
+    }
+
+    @Test
+    public void testRemovedOperationsAreNotIteratedAgain() throws Exception {
+        final Iterator<RestOperations.RestOperation> it = log.values().iterator();
+        for (int i = 0; i < OPERATIONS / 2; i++) {
+            it.next();
+            it.remove();
+        }
+        it.next();
+        it.next();
+        it.remove();
+        assertEquals(OPERATIONS / 2 - 1, log.size());
+        assertNull(log.get(1L));
+        final List<Long> remaining = new ArrayList<Long>();
+        for (RestOperations.RestOperation operation : log.values()) {
+            remaining.add(operation.getBatchId());
+        }
+        assertEquals(Arrays.asList(6L, 8L, 9L, 10L), remaining);
+    }
+
+    @Test
+    public void testCloseDeletesTheSpillFile() throws Exception {
+        final File file = log.getFile();
+        assertTrue(file.exists());
+        operations.close();
+        assertFalse(file.exists());
+        assertNull(log.getFile());
+    }
+
+    @Test
+    public void testOperationsStayOnHeapBelowTheThreshold() throws Exception {
+        final RestOperations small = new RestOperations(new AtomicLong(), OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            small.record(RestOperations.RestOperation.Methods.POST, "node", map("index", i), BASE);
+        }
+        assertFalse(small.isSpilled());
+        assertEquals(OPERATIONS, small.getRecordedRequests().size());
+        assertEquals(0, ((Map<?, ?>) small.getRecordedRequests().get(1L).getData()).get("index"));
+        small.close();
+    }
+}
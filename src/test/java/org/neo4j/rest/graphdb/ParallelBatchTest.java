@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.rest.graphdb.batch.BatchCallback;
+import org.neo4j.rest.graphdb.batch.BatchRestAPI;
+import org.neo4j.rest.graphdb.batch.ParallelBatchExecutor;
+import org.neo4j.rest.graphdb.batch.RestOperations;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.util.RestConfig;
+
+public class ParallelBatchTest extends RestTestBase {
+    private static final int PARALLELISM = 4;
+    private static final int PAIRS = 50;
+    private static final DynamicRelationshipType KNOWS = DynamicRelationshipType.withName("KNOWS");
+
+    private RestAPIFacade restAPI;
+
+    public ParallelBatchTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withBatchParallelism(PARALLELISM).build());
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testRelationshipsAreSentAfterTheirNodes() throws Exception {
+        final BatchRestAPI batchRestAPI = new BatchRestAPI(restAPI.getBaseUri(), restAPI);
+        for (int i = 0; i < PAIRS; i++) {
+            final RestNode start = batchRestAPI.createNode(map("pair", i));
+            final RestNode end = batchRestAPI.createNode(map("pair", i));
+            batchRestAPI.createRelationship(start, end, KNOWS, null);
+        }
+        final List<List<Map<Long, RestOperations.RestOperation>>> waves = split(batchRestAPI);
+        assertEquals(2, waves.size());
+        int operations = 0;
+        for (int wave = 0; wave < waves.size(); wave++) {
+            assertEquals(PARALLELISM, waves.get(wave).size());
+            for (Map<Long, RestOperations.RestOperation> subBatch : waves.get(wave)) {
+                final List<Long> ids = new ArrayList<Long>(subBatch.keySet());
+                final List<Long> sorted = new ArrayList<Long>(ids);
+                Collections.sort(sorted);
+                assertEquals("recorded order is kept", sorted, ids);
+                for (RestOperations.RestOperation operation : subBatch.values()) {
+                    assertEquals(wave == 1, operation.getUri().equals("relationships"));
+                }
+                operations += subBatch.size();
+            }
+        }
+        assertEquals(PAIRS * 3, operations);
+    }
+
+    @Test
+    public void testConnectedImportIsSplit() throws Exception {
+        final List<RestNode> chain = restAPI.executeBatch(new BatchCallback<List<RestNode>>() {
+            public List<RestNode> recordBatch(RestAPI batchRestApi) {
+                final List<RestNode> chain = new ArrayList<RestNode>();
+                for (int i = 0; i < PAIRS; i++) {
+                    chain.add(batchRestApi.createNode(map("position", i)));
+                }
+                for (int i = 1; i < PAIRS; i++) {
+                    batchRestApi.createRelationship(chain.get(i - 1), chain.get(i), KNOWS, null);
+                }
+                return chain;
+            }
+        });
+        for (int i = 1; i < PAIRS; i++) {
+            final Node previous = loadRealNode(chain.get(i - 1));
+            assertEquals(i - 1, previous.getProperty("position"));
+            assertEquals(chain.get(i).getId(), previous.getSingleRelationship(KNOWS, Direction.OUTGOING).getEndNode().getId());
+        }
+        final ParallelBatchExecutor executor = restAPI.getParallelBatchExecutor();
+        assertEquals(1, executor.getSplitBatches());
+        // the nodes are created concurrently, the relationships of the chain share nodes and are sent together
+        assertEquals(PARALLELISM + 1, executor.getSubBatches());
+    }
+
+    @Test
+    public void testRelationshipsOnSharedNodesDoNotFailPartially() throws Exception {
+        final int hubs = 3;
+        final List<RestNode> existing = new ArrayList<RestNode>();
+        for (int i = 0; i < hubs; i++) {
+            existing.add(restAPI.createNode(map("hub", i)));
+        }
+        final int rounds = 5;
+        for (int round = 0; round < rounds; round++) {
+            restAPI.executeBatch(new BatchCallback<Void>() {
+                public Void recordBatch(RestAPI batchRestApi) {
+                    for (int i = 0; i < PAIRS; i++) {
+                        final RestNode node = batchRestApi.createNode(map("pair", i));
+                        batchRestApi.createRelationship(node, existing.get(i % hubs), KNOWS, null);
+                        batchRestApi.createRelationship(existing.get((i + 1) % hubs), node, KNOWS, null);
+                    }
+                    return null;
+                }
+            });
+        }
+        int relationships = 0;
+        for (RestNode hub : existing) {
+            for (Relationship relationship : loadRealNode(hub).getRelationships(KNOWS)) {
+                relationships++;
+            }
+        }
+        assertEquals(rounds * PAIRS * 2, relationships);
+        assertEquals(rounds, restAPI.getParallelBatchExecutor().getSplitBatches());
+        assertEquals(rounds * (PARALLELISM + 1), restAPI.getParallelBatchExecutor().getSubBatches());
+    }
+
+    @Test
+    public void testOperationsOnACreatedNodeStayTogether() throws Exception {
+        final BatchRestAPI batchRestAPI = new BatchRestAPI(restAPI.getBaseUri(), restAPI);
+        final RestNode created = batchRestAPI.createNode(null);
+        batchRestAPI.createNode(null);
+        batchRestAPI.setPropertyOnEntity(created, "value", 1);
+        batchRestAPI.createNode(null);
+        batchRestAPI.setPropertyOnEntity(created, "value", 2);
+        final List<List<Map<Long, RestOperations.RestOperation>>> waves = split(batchRestAPI);
+        assertEquals(2, waves.size());
+        assertEquals(1, waves.get(1).size());
+        assertEquals(Arrays.asList(3L, 5L), new ArrayList<Long>(waves.get(1).get(0).keySet()));
+    }
+
+    @Test
+    public void testOperationsOnTheSameNodeStayTogether() throws Exception {
+        final RestNode existing = restAPI.createNode(null);
+        final BatchRestAPI batchRestAPI = new BatchRestAPI(restAPI.getBaseUri(), restAPI);
+        batchRestAPI.createNode(null);
+        batchRestAPI.setPropertyOnEntity(existing, "value", 1);
+        batchRestAPI.createNode(null);
+        batchRestAPI.setPropertyOnEntity(existing, "value", 2);
+        final List<List<Map<Long, RestOperations.RestOperation>>> waves = split(batchRestAPI);
+        assertEquals(1, waves.size());
+        assertEquals(3, waves.get(0).size());
+        for (Map<Long, RestOperations.RestOperation> subBatch : waves.get(0)) {
+            if (subBatch.size() == 2) assertEquals(new HashSet<Long>(Arrays.asList(2L, 4L)), subBatch.keySet());
+        }
+    }
+
+    @Test
+    public void testLargeBatchIsExecutedInParallel() throws Exception {
+        final List<RestNode[]> pairs = restAPI.executeBatch(new BatchCallback<List<RestNode[]>>() {
+            public List<RestNode[]> recordBatch(RestAPI batchRestApi) {
+                final List<RestNode[]> pairs = new ArrayList<RestNode[]>();
+                for (int i = 0; i < PAIRS; i++) {
+                    final RestNode start = batchRestApi.createNode(map("pair", i));
+                    final RestNode end = batchRestApi.createNode(map("pair", i));
+                    batchRestApi.createRelationship(start, end, KNOWS, map("pair", i));
+                    pairs.add(new RestNode[]{start, end});
+                }
+                return pairs;
+            }
+        });
+        final Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < PAIRS; i++) {
+            final Node start = loadRealNode(pairs.get(i)[0]);
+            assertEquals(i, start.getProperty("pair"));
+            assertEquals(pairs.get(i)[1].getId(), start.getSingleRelationship(KNOWS, Direction.OUTGOING).getEndNode().getId());
+            ids.add(start.getId());
+        }
+        assertEquals(PAIRS, ids.size());
+        final ParallelBatchExecutor executor = restAPI.getParallelBatchExecutor();
+        assertEquals(1, executor.getSplitBatches());
+        assertEquals(2 * PARALLELISM, executor.getSubBatches());
+    }
+
+    @Test
+    public void testBatchWithCypherIsNotSplit() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            restAPI.createNode(map("name", "first"));
+            restAPI.createNode(map("name", "second"));
+            restAPI.query("start n=node(0) return n", null);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals(1, restAPI.getParallelBatchExecutor().getBatches());
+        assertEquals(0, restAPI.getParallelBatchExecutor().getSplitBatches());
+    }
+
+    private List<List<Map<Long, RestOperations.RestOperation>>> split(BatchRestAPI batchRestAPI) {
+        return restAPI.getParallelBatchExecutor().split(batchRestAPI.getRecordedOperations().getRecordedRequests().values(), restAPI.getBaseUri());
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.entity.PropertyRefreshPolicies;
+import org.neo4j.rest.graphdb.entity.RestNode;
+
+public class PropertyRefreshPolicyTest extends RestTestBase {
+    private RestAPIFacade reader;
+    private RestAPIFacade writer;
+
+    public PropertyRefreshPolicyTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        reader = new RestAPIFacade(url + "/db/data");
+        writer = new RestAPIFacade(url + "/db/data");
+    }
+
+    @After
+    public void close() {
+        reader.close();
+        writer.close();
+    }
+
+    @Test
+    public void testNeverRefreshKeepsSnapshot() {
+        reader.setPropertyRefreshPolicy(PropertyRefreshPolicies.never());
+        final RestNode node = reader.createNode(map("name", "before"));
+        writer.getNodeById(node.getId()).setProperty("name", "after");
+        assertEquals("before", node.getProperty("name"));
+    }
+
+    @Test
+    public void testTimeToLiveRefreshesExpiredProperties() throws Exception {
+        reader.setPropertyRefreshPolicy(PropertyRefreshPolicies.timeToLive(0));
+        final RestNode node = reader.createNode(map("name", "before"));
+        writer.getNodeById(node.getId()).setProperty("name", "after");
+        Thread.sleep(5);
+        assertEquals("after", node.getProperty("name"));
+    }
+
+    @Test
+    public void testConditionalRefreshSeesChanges() throws Exception {
+        reader.setPropertyRefreshPolicy(PropertyRefreshPolicies.conditional(0));
+        final RestNode node = reader.createNode(map("name", "before"));
+        node.invalidatePropertyData();
+        assertEquals("before", node.getProperty("name"));
+        writer.getNodeById(node.getId()).setProperty("name", "after");
+        Thread.sleep(5);
+        assertEquals("after", node.getProperty("name"));
+    }
+}
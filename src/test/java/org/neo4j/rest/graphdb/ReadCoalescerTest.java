@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.util.Config;
+
+public class ReadCoalescerTest extends RestTestBase {
+    private static final int THREADS = 20;
+    private static final int NODES = 5;
+
+    private RestAPIFacade restAPI;
+    private long[] ids = new long[NODES];
+
+    public ReadCoalescerTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        System.setProperty(Config.CONFIG_PREFIX + Config.READ_COALESCE_WINDOW, "20");
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.READ_COALESCE_WINDOW);
+        }
+        final Transaction tx = getGraphDatabase().beginTx();
+        try {
+            for (int i = 0; i < NODES; i++) {
+                final Node node = getGraphDatabase().createNode();
+                node.setProperty("index", i);
+                ids[i] = node.getId();
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneFetch() throws Exception {
+        final AtomicLong errors = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i % NODES;
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        final RestNode node = restAPI.getNodeById(ids[index]);
+                        if (node.getId() != ids[index] || !Integer.valueOf(index).equals(node.getProperty("index"))) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        final ReadCoalescer coalescer = restAPI.getReadCoalescer();
+        assertNotNull(coalescer);
+        assertEquals(THREADS, coalescer.getReads());
+        assertTrue(coalescer + " should have coalesced reads", coalescer.getFetches() < coalescer.getReads());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testMissingIdIsReportedToItsCaller() throws Exception {
+        restAPI.getNodeById(Integer.MAX_VALUE);
+    }
+}
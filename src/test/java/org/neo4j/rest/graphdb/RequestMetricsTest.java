@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.transport.OperationMetrics;
+import org.neo4j.rest.graphdb.transport.RequestMetrics;
+import org.neo4j.rest.graphdb.transport.RequestMetrics.Resource;
+import org.neo4j.rest.graphdb.util.Config;
+
+public class RequestMetricsTest extends RestTestBase {
+    private static final int READS = 100;
+
+    private RestAPIFacade restAPI;
+
+    public RequestMetricsTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        System.setProperty(Config.CONFIG_PREFIX + Config.METRICS, "true");
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.METRICS);
+        }
+    }
+
+    @After
+    public void close() {
+        if (restAPI != null) restAPI.close();
+    }
+
+    @Test
+    public void testRecordsPerOperationClass() throws Exception {
+        final RestNode node = restAPI.createNode(singletonMap("name", (Object) "metrics"));
+        for (int i = 0; i < READS; i++) {
+            restAPI.getNodeById(node.getId());
+        }
+        restAPI.setPropertyOnEntity(node, "name", "updated");
+
+        final RequestMetrics metrics = restAPI.getRequestMetrics();
+        assertNotNull(metrics);
+        final OperationMetrics reads = metrics.getOperation(Resource.NODE, "GET");
+        assertEquals(READS, reads.getCalls());
+        assertEquals(0, reads.getErrors());
+        assertTrue(reads.getBytesIn() > 0);
+        assertTrue(reads.getP50Millis() <= reads.getP99Millis());
+        assertTrue(reads.getP99Millis() <= reads.getP999Millis());
+        assertTrue(reads.getP999Millis() <= reads.getMaxMillis());
+
+        final OperationMetrics writes = metrics.getOperation(Resource.PROPERTY, "PUT");
+        assertEquals(1, writes.getCalls());
+        assertTrue(writes.getBytesOut() > 0);
+        assertEquals(1, metrics.getOperation(Resource.NODE, "POST").getCalls());
+        assertNull(metrics.getOperation(Resource.CYPHER, "POST"));
+    }
+
+    @Test
+    public void testPublishedViaJmx() throws Exception {
+        restAPI.getNodeById(0);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = restAPI.getRequestMetrics().getObjectName();
+        assertNotNull(name);
+        assertEquals(restAPI.getRequestMetrics().getCalls(), server.getAttribute(name, "Calls"));
+        final CompositeData[] operations = (CompositeData[]) server.getAttribute(name, "Operations");
+        assertEquals("node GET", operations[0].get("operation"));
+
+        restAPI.close();
+        restAPI = null;
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -20,6 +20,7 @@
 package org.neo4j.rest.graphdb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.neo4j.helpers.collection.MapUtil.map;
@@ -325,4 +326,17 @@ public class RestAPITest extends RestTestBase {
         final RestRelationship rel3 = restAPI.getOrCreateRelationship(index, "uid", "41", michael, david, "KNOWS", map("at", "Neo4j"));
         assertEquals(false, rel3.equals(rel1));
     }
+
+    @Test
+    public void testStreamingResultIsParsedFromOpenResponse() {
+        final ExecutingRestRequest request = new ExecutingRestRequest(restAPI.getBaseUri());
+        try {
+            final RequestResult result = request.get("");
+            assertTrue(result.isStreaming());
+            assertTrue(result.toMap().containsKey("reference_node"));
+            assertFalse(result.isStreaming());
+        } finally {
+            request.close();
+        }
+    }
 }
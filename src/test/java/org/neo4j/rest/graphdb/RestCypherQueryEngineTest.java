@@ -35,7 +35,9 @@ import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.rest.graphdb.entity.RestNode;
 import org.neo4j.rest.graphdb.query.RestCypherQueryEngine;
+import org.neo4j.rest.graphdb.query.RestQueryResult;
 import org.neo4j.rest.graphdb.util.QueryResult;
+import org.neo4j.rest.graphdb.util.RestConfig;
 
 
 public class RestCypherQueryEngineTest extends RestTestBase {
@@ -149,6 +151,31 @@ public class RestCypherQueryEngineTest extends RestTestBase {
     }
     
     
+    @Test
+    public void testStreamsAllNodesRowByRow(){
+        final RestAPIFacade streaming = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withStreamQueryResults(true).build());
+        try {
+            final Collection<Node> result = IteratorUtil.asCollection(new RestCypherQueryEngine(streaming).query("start n=node(*) return n", null).to(Node.class));
+            assertEquals(countExistingNodes(), result.size());
+        } finally {
+            streaming.close();
+        }
+    }
+
+    @Test
+    public void testClosedStreamedResultsReleaseTheirConnection(){
+        final RestAPIFacade streaming = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withStreamQueryResults(true)
+                .withMaxConnections(1).withMaxConnectionsPerHost(1).withConnectionWaitTimeout(1000).build());
+        try {
+            for (int i = 0; i < 5; i++) {
+                ((RestQueryResult) new RestCypherQueryEngine(streaming).query("start n=node(*) return n", null)).close();
+            }
+            assertEquals(countExistingNodes(), IteratorUtil.count(new RestCypherQueryEngine(streaming).query("start n=node(*) return n", null)));
+        } finally {
+            streaming.close();
+        }
+    }
+
     public long getNeoId(){
         return  embeddedMatrixdata.getNeoNode().getId();
     }    
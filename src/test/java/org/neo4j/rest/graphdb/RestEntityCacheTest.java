@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.entity.RestEntityCache;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+import org.neo4j.rest.graphdb.util.Config;
+
+public class RestEntityCacheTest extends RestTestBase {
+    private RestAPIFacade restAPI;
+    private RestEntityCache cache;
+
+    public RestEntityCacheTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        System.setProperty(Config.CONFIG_PREFIX + Config.CACHE_SIZE, "100");
+        try {
+            restAPI = new RestAPIFacade(url + "/db/data");
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.CACHE_SIZE);
+        }
+        restAPI.getDirect().setPropertyRefetchTimeInMillis(60 * 1000);
+        cache = restAPI.getEntityCache();
+        assertNotNull(cache);
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testRepeatedLookupsAreServedFromCache() {
+        final RestNode node = restAPI.createNode(map("name", "cached"));
+        final long hits = cache.getHits();
+        assertEquals("cached", restAPI.getNodeById(node.getId()).getProperty("name"));
+        assertEquals("cached", restAPI.getNodeById(node.getId()).getProperty("name"));
+        assertEquals(hits + 2, cache.getHits());
+    }
+
+    @Test
+    public void testLocalWritesInvalidateEntry() {
+        final RestNode node = restAPI.createNode(map("name", "before"));
+        restAPI.getNodeById(node.getId()).setProperty("name", "after");
+        final long misses = cache.getMisses();
+        assertEquals("after", restAPI.getNodeById(node.getId()).getProperty("name"));
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void testPropertiesFromCacheAreAsOldAsTheEntry() throws Exception {
+        restAPI.getDirect().setPropertyRefetchTimeInMillis(500);
+        final RestNode node = restAPI.createNode(map("name", "before"));
+        restAPI.getNodeById(node.getId());
+        Thread.sleep(300);
+        final long hits = cache.getHits();
+        final RestNode cached = restAPI.getNodeById(node.getId());
+        assertEquals(hits + 1, cache.getHits());
+        final RestAPIFacade other = new RestAPIFacade(url + "/db/data");
+        try {
+            other.getNodeById(node.getId()).setProperty("name", "after");
+        } finally {
+            other.close();
+        }
+        Thread.sleep(300);
+        assertEquals("after", cached.getProperty("name"));
+    }
+
+    @Test
+    public void testRelationshipNodesAreResolvedFromCache() {
+        final RestNode start = restAPI.createNode(map("name", "start"));
+        final RestNode end = restAPI.createNode(map("name", "end"));
+        final RestRelationship relationship = restAPI.createRelationship(start, end, Type.TEST, null);
+        restAPI.getNodeById(start.getId());
+        final long hits = cache.getHits();
+        final RestRelationship loaded = restAPI.getRelationshipById(relationship.getId());
+        assertEquals("start", loaded.getStartNode().getProperty("name"));
+        assertTrue(cache.getHits() > hits);
+    }
+}
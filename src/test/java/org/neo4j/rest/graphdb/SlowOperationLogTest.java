@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.rest.graphdb.util.CallTrace;
+import org.neo4j.rest.graphdb.util.RestConfig;
+
+public class SlowOperationLogTest extends RestTestBase {
+    private static final int NODES = 200;
+
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private final Handler handler = new Handler() {
+        public void publish(LogRecord record) {
+            messages.add(record.getMessage());
+        }
+
+        public void flush() { }
+
+        public void close() { }
+    };
+    private RestAPIFacade restAPI;
+
+    public SlowOperationLogTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        restAPI = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withSlowOperationThreshold(1).build());
+        CallTrace.LOG.addHandler(handler);
+    }
+
+    @After
+    public void close() {
+        CallTrace.LOG.removeHandler(handler);
+        restAPI.close();
+    }
+
+    @Test
+    public void testSlowBatchIsLoggedWithPhases() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            for (int i = 0; i < NODES; i++) {
+                restAPI.createNode(Collections.<String, Object>singletonMap("index", i));
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals(1, messages.size());
+        final String message = messages.get(0);
+        assertTrue(message, message.startsWith("slow batch took"));
+        assertTrue(message, message.endsWith("/batch with " + NODES + " operations"));
+        for (CallTrace.Phase phase : CallTrace.Phase.values()) {
+            assertTrue(message, message.contains(", " + phase.name().toLowerCase() + " "));
+        }
+        assertTrue(message, !message.contains("sent 0 bytes") && !message.contains("received 0 bytes"));
+    }
+
+    @Test
+    public void testSlowQueryIsLoggedWithStatement() throws Exception {
+        final String statement = "start n=node(*) return n";
+        restAPI.query(statement, null);
+        if (messages.isEmpty()) return; // the query was faster than the threshold
+        assertTrue(messages.get(0), messages.get(0).startsWith("slow query took"));
+        assertTrue(messages.get(0), messages.get(0).endsWith(": " + statement));
+    }
+
+    @Test
+    public void testStreamedQueryIsLoggedOnceIterated() throws Exception {
+        final RestAPIFacade streaming = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withStreamQueryResults(true).withSlowOperationThreshold(1).build());
+        try {
+            final String statement = "start n=node(*) return n";
+            final Iterator<Map<String, Object>> rows = streaming.query(statement, null, null).iterator();
+            assertTrue(messages.isEmpty());
+            Thread.sleep(5);
+            while (rows.hasNext()) {
+                rows.next();
+            }
+            assertEquals(1, messages.size());
+            final String message = messages.get(0);
+            assertTrue(message, message.startsWith("slow query took"));
+            assertTrue(message, message.endsWith(": " + statement));
+            assertTrue(message, !message.contains("received 0 bytes"));
+        } finally {
+            streaming.close();
+        }
+    }
+
+    @Test
+    public void testFastCallsAreNotLogged() throws Exception {
+        final RestAPIFacade patient = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withSlowOperationThreshold(60000).build());
+        try {
+            patient.query("start n=node(0) return n", null);
+            assertTrue(messages.isEmpty());
+        } finally {
+            patient.close();
+        }
+    }
+
+    @Test
+    public void testThresholdBelongsToTheFacade() throws Exception {
+        final RestAPIFacade untraced = new RestAPIFacade(url + "/db/data", null, null, RestConfig.builder().withSlowOperationThreshold(0).build());
+        try {
+            final BatchTransaction tx = BatchTransaction.begin(untraced);
+            try {
+                for (int i = 0; i < NODES; i++) {
+                    untraced.createNode(Collections.<String, Object>singletonMap("index", i));
+                }
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertTrue(messages.toString(), messages.isEmpty());
+        } finally {
+            untraced.close();
+        }
+    }
+}
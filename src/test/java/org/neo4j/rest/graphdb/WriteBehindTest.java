@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.index.impl.lucene.LuceneIndexImplementation;
+import org.neo4j.rest.graphdb.entity.RestNode;
+import org.neo4j.rest.graphdb.entity.RestRelationship;
+import org.neo4j.rest.graphdb.index.RestIndex;
+import org.neo4j.rest.graphdb.util.RestConfig;
+
+public class WriteBehindTest extends RestTestBase {
+    private static final int NODES = 20;
+    private static final int WRITES = 10;
+
+    private RestAPIFacade restAPI;
+
+    public WriteBehindTest(String url) {
+        super(url);
+    }
+
+    @Before
+    public void init() {
+        final RestConfig config = RestConfig.builder().withWriteBehind(true).withWriteThreads(4).withWriteBehindQueueSize(8).build();
+        restAPI = new RestAPIFacade(url + "/db/data", null, null, config);
+    }
+
+    @After
+    public void close() {
+        restAPI.close();
+    }
+
+    @Test
+    public void testWritesToOneEntityKeepTheirOrder() throws Exception {
+        final List<RestNode> nodes = new ArrayList<RestNode>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(restAPI.createNode(null));
+        }
+        for (int w = 0; w < WRITES; w++) {
+            for (RestNode node : nodes) {
+                restAPI.setPropertyOnEntity(node, "value", w);
+            }
+        }
+        restAPI.flush();
+        for (RestNode node : nodes) {
+            assertEquals(WRITES - 1, loadRealNode(node).getProperty("value"));
+        }
+        assertEquals(NODES * WRITES, restAPI.getWriteBehind().getWrites());
+        assertEquals(0, restAPI.getWriteBehind().getQueued());
+    }
+
+    @Test
+    public void testSetThenGetReadsTheWrite() throws Exception {
+        final RestNode node = restAPI.createNode(null);
+        assertFalse(node.hasProperty("value"));
+        for (int w = 0; w < WRITES; w++) {
+            node.setProperty("value", w);
+            assertEquals(w, node.getProperty("value"));
+        }
+        node.removeProperty("value");
+        assertFalse(node.hasProperty("value"));
+        assertEquals(WRITES + 1, restAPI.getWriteBehind().getWrites());
+    }
+
+    @Test
+    public void testRemovePropertyAfterSet() throws Exception {
+        final RestNode node = restAPI.createNode(null);
+        restAPI.setPropertyOnEntity(node, "name", "write");
+        restAPI.removeProperty(node, "name");
+        restAPI.flush();
+        assertFalse(loadRealNode(node).hasProperty("name"));
+    }
+
+    @Test
+    public void testRelationshipIsCreatedAfterTheQueuedWritesOfItsNodes() throws Exception {
+        final RestNode start = restAPI.createNode(null);
+        final RestNode end = restAPI.createNode(null);
+        restAPI.setPropertyOnEntity(start, "name", "start");
+        restAPI.setPropertyOnEntity(end, "name", "end");
+        final RestRelationship relationship = restAPI.createRelationship(start, end, DynamicRelationshipType.withName("KNOWS"), null);
+        assertTrue(relationship.getId() >= 0);
+        restAPI.setPropertyOnEntity(relationship, "since", 2013);
+        restAPI.flush();
+        final Node realStart = loadRealNode(start);
+        assertEquals("start", realStart.getProperty("name"));
+        assertEquals(2013, realStart.getSingleRelationship(DynamicRelationshipType.withName("KNOWS"), Direction.OUTGOING).getProperty("since"));
+    }
+
+    @Test
+    public void testIndexAndDelete() throws Exception {
+        final RestIndex<Node> index = restAPI.createIndex(Node.class, "write-behind", LuceneIndexImplementation.EXACT_CONFIG);
+        final RestNode indexed = restAPI.createNode(null);
+        final RestNode deleted = restAPI.createNode(null);
+        restAPI.addToIndex(indexed, index, "name", "indexed");
+        restAPI.deleteEntity(deleted);
+        restAPI.flush();
+        assertEquals(indexed.getId(), getGraphDatabase().index().forNodes("write-behind").get("name", "indexed").getSingle().getId());
+        try {
+            loadRealNode(deleted);
+            fail("node should have been deleted");
+        } catch (NotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testFirstFailureIsRethrownByFlush() throws Exception {
+        final WriteBehind writeBehind = restAPI.getWriteBehind();
+        assertNotNull(writeBehind);
+        final IllegalStateException failure = new IllegalStateException("first");
+        writeBehind.submit("a", new Runnable() {
+            public void run() {
+                throw failure;
+            }
+        });
+        writeBehind.submit("a", new Runnable() {
+            public void run() {
+                throw new IllegalStateException("second");
+            }
+        });
+        try {
+            restAPI.flush();
+            fail("flush should rethrow the failed write");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(2, writeBehind.getFailures());
+        restAPI.flush();
+    }
+
+    @Test
+    public void testWritesInTransactionAreNotQueued() throws Exception {
+        final BatchTransaction tx = BatchTransaction.begin(restAPI);
+        try {
+            final RestNode node = restAPI.createNode(null);
+            restAPI.setPropertyOnEntity(node, "name", "batched");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals(0, restAPI.getWriteBehind().getWrites());
+    }
+}
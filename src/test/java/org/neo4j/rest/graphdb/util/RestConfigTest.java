@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RestConfigTest {
+
+    @Test
+    public void testDefaultsAreResolvedFromSystemPropertiesOnce() throws Exception {
+        System.setProperty(Config.CONFIG_PREFIX + Config.MAX_CONNECTIONS_PER_HOST, "7");
+        final RestConfig config;
+        try {
+            config = RestConfig.fromSystemProperties();
+        } finally {
+            System.clearProperty(Config.CONFIG_PREFIX + Config.MAX_CONNECTIONS_PER_HOST);
+        }
+        assertEquals(7, config.getMaxConnectionsPerHost());
+        assertEquals(Config.getMaxConnections(), config.getMaxConnections());
+        assertEquals(Config.getReadTimeout(), config.getReadTimeout());
+        assertEquals(Config.streamingIsEnabled(), config.isStreaming());
+    }
+
+    @Test
+    public void testBuilderOverridesAndCopies() throws Exception {
+        final RestConfig config = RestConfig.builder().withStreaming(false).withReadTimeout(60000).withWriteThreads(4).build();
+        assertFalse(config.isStreaming());
+        assertEquals(60000, config.getReadTimeout());
+        assertEquals(4, config.getWriteThreads());
+
+        final RestConfig copy = config.toBuilder().withBatchTransactions(true).build();
+        assertTrue(copy.useBatchTransactions());
+        assertFalse(copy.isStreaming());
+        assertEquals(60000, copy.getReadTimeout());
+        assertFalse(config.useBatchTransactions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidValues() throws Exception {
+        RestConfig.builder().withMaxConnectionsPerHost(0).build();
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StreamingJsonEntityTest {
+    @Test
+    public void testWritesSameJsonAsStringSerialization() throws Exception {
+        final Object data = createBatchPayload(10);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new StreamingJsonEntity(data).write(stream);
+        assertEquals(JsonHelper.readJson(JsonHelper.createJsonFrom(data)), JsonHelper.readJson(stream.toString("UTF-8")));
+        assertTrue(stream.size() < JsonHelper.createJsonFrom(data).length());
+    }
+
+    private Object createBatchPayload(int operations) {
+        final List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>(operations);
+        for (int i = 0; i < operations; i++) {
+            final Map<String, Object> body = new HashMap<String, Object>();
+            body.put("name", "node" + i);
+            body.put("age", i);
+            final Map<String, Object> operation = new HashMap<String, Object>();
+            operation.put("method", "POST");
+            operation.put("to", "node");
+            operation.put("body", body);
+            operation.put("id", i);
+            batch.add(operation);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.rest.graphdb.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.net.URLEncoder;
+
+import org.junit.Test;
+
+public class UriEncoderTest {
+
+    @Test
+    public void testEncodesLikeUrlEncoder() throws Exception {
+        final String[] values = {"", "name", "first name", "a+b=c&d", "50%", "key:value/path?x#y", "\u00dcn\u00efc\u00f6d\u00e9", "\u4e2d\u6587",
+                "emoji \ud83d\ude00", "unpaired \ud83d", "~'()!*-._", "\t\n"};
+        for (String value : values) {
+            assertEquals(value, URLEncoder.encode(value, "utf-8").replaceAll("\\+", "%20"), UriEncoder.encode(value));
+        }
+    }
+
+    @Test
+    public void testReturnsSafeValuesUnchanged() throws Exception {
+        final String value = "node_auto_index-42";
+        assertSame(value, UriEncoder.encode(value));
+        assertEquals("42", UriEncoder.encode(42));
+        assertEquals("", UriEncoder.encode(null));
+    }
+}